@@ -1,6 +1,9 @@
+import com.android.build.api.artifact.SingleArtifact
+
 plugins {
     alias(libs.plugins.android.application)
     alias(libs.plugins.google.gms.google.services)
+    alias(libs.plugins.baselineprofile)
 }
 
 android {
@@ -15,21 +18,39 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        // The till's public key for signed earn codes (EarnCode), X.509 DER as base64url, set with
+        // -PearnCodePublicKey=... or in ~/.gradle/gradle.properties. Empty: codes are not checked
+        // on the device and the earn transaction alone decides. Never the till's private key.
+        val earnCodePublicKey = (project.findProperty("earnCodePublicKey") as String?).orEmpty()
+        buildConfigField("String", "EARN_CODE_PUBLIC_KEY", "\"$earnCodePublicKey\"")
     }
 
     buildTypes {
         release {
-            isMinifyEnabled = false
+            // R8 full mode (gradle.properties); keep rules for reflection in proguard-rules.pro
+            isMinifyEnabled = true
+            isShrinkResources = true
             proguardFiles(
                 getDefaultProguardFile("proguard-android-optimize.txt"),
                 "proguard-rules.pro"
             )
         }
     }
+    buildFeatures {
+        buildConfig = true
+    }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_1_8
         targetCompatibility = JavaVersion.VERSION_1_8
     }
+    testOptions {
+        unitTests.all { test ->
+            // JVM microbenchmarks are skipped unless asked for: ./gradlew test -Pbenchmarks [-PbenchOps=N]
+            test.systemProperty("benchmarks", project.hasProperty("benchmarks"))
+            project.findProperty("benchOps")?.let { test.systemProperty("benchOps", it) }
+        }
+    }
 }
 
 dependencies {
@@ -60,4 +81,111 @@ dependencies {
 
     implementation(libs.glide)
     annotationProcessor(libs.glide.compiler)
-}
\ No newline at end of file
+
+    implementation(libs.work.runtime)
+
+    // Installs the baseline profile generated by :macrobenchmark on sideloaded builds too
+    implementation(libs.profileinstaller)
+    baselineProfile(project(":macrobenchmark"))
+}
+
+// ---- Release checks ---------------------------------------------------------------------
+// Both run after every assembleRelease, so a shrinking or size regression fails the build.
+
+/** Classes Gson or Firestore map by reflection; a trailing '.' covers a whole package. */
+val reflectionMappedClasses = listOf(
+    "com.example.loyaltyapp.models.",
+    "com.example.loyaltyapp.ApiService\$VerifyResponse",
+    "com.example.loyaltyapp.VerifyResponse",
+    "com.example.loyaltyapp.EmailResponse",
+    "com.example.loyaltyapp.VerifyRequest",
+    "com.example.loyaltyapp.EmailRequest",
+)
+
+/** Fails when an APK of the variant is larger than the budget. */
+abstract class ApkSizeCheck : DefaultTask() {
+    @get:InputFiles abstract val apkDir: DirectoryProperty
+    @get:Input abstract val budgetKb: Property<Long>
+
+    @TaskAction
+    fun check() {
+        val apks = apkDir.get().asFile.walk().filter { it.extension == "apk" }.toList()
+        if (apks.isEmpty()) throw GradleException("No APK in ${apkDir.get().asFile}")
+        for (apk in apks) {
+            val kb = apk.length() / 1024
+            logger.lifecycle("${apk.name}: $kb KB (budget ${budgetKb.get()} KB)")
+            if (kb > budgetKb.get()) {
+                throw GradleException("${apk.name} is $kb KB, over the ${budgetKb.get()} KB budget")
+            }
+        }
+    }
+}
+
+/**
+ * Reads R8's mapping file and fails when a reflection-mapped class was dropped or renamed,
+ * or lost the name of a field, constructor or accessor; what Gson and Firestore would then
+ * silently leave empty at runtime.
+ */
+abstract class ReleaseMappingCheck : DefaultTask() {
+    @get:InputFile abstract val mappingFile: RegularFileProperty
+    @get:Input abstract val classes: ListProperty<String>
+
+    @TaskAction
+    fun check() {
+        val wanted = classes.get()
+        fun covered(cls: String) = wanted.any { if (it.endsWith(".")) cls.startsWith(it) else cls == it }
+
+        val problems = mutableListOf<String>()
+        val seen = mutableSetOf<String>()
+        var current: String? = null
+        mappingFile.get().asFile.forEachLine { line ->
+            if (line.trimStart().startsWith("#") || !line.contains(" -> ")) return@forEachLine
+            val from = line.substringBefore(" -> ").trim()
+            val to = line.substringAfter(" -> ").trim().removeSuffix(":")
+            if (!line.startsWith(" ")) {
+                current = if (covered(from)) from else null
+                if (current != null) {
+                    seen += from
+                    if (from != to) problems += "$from renamed to $to"
+                }
+                return@forEachLine
+            }
+            val cls = current ?: return@forEachLine
+            val isMethod = from.contains('(')
+            val name = (if (isMethod) from.substringBefore('(') else from).substringAfterLast(' ')
+            // Frames inlined from other classes carry a qualified name
+            if (name.contains('.') || name == to) return@forEachLine
+            val reflective = !isMethod || name == "<init>"
+                    || name.startsWith("get") || name.startsWith("set") || name.startsWith("is")
+            if (reflective) problems += "$cls.$name renamed to $to"
+        }
+        for (w in wanted) {
+            if (w.endsWith(".")) {
+                if (seen.none { it.startsWith(w) }) problems += "nothing kept under $w"
+            } else if (w !in seen) {
+                problems += "$w missing from the release build"
+            }
+        }
+        if (problems.isNotEmpty()) {
+            throw GradleException("Keep rules out of date (proguard-rules.pro):\n  " + problems.joinToString("\n  "))
+        }
+        logger.lifecycle("Reflection-mapped classes intact: ${seen.size}")
+    }
+}
+
+androidComponents {
+    onVariants(selector().withBuildType("release")) { variant ->
+        val suffix = variant.name.replaceFirstChar { it.uppercase() }
+        val sizeCheck = tasks.register<ApkSizeCheck>("check${suffix}ApkSize") {
+            apkDir.set(variant.artifacts.get(SingleArtifact.APK))
+            budgetKb.set(providers.gradleProperty("loyalty.releaseApkBudgetKb").map { it.toLong() })
+        }
+        val mappingCheck = tasks.register<ReleaseMappingCheck>("check${suffix}Mapping") {
+            mappingFile.set(variant.artifacts.get(SingleArtifact.OBFUSCATION_MAPPING_FILE))
+            classes.set(reflectionMappedClasses)
+        }
+        tasks.matching { it.name == "assemble$suffix" }.configureEach {
+            finalizedBy(sizeCheck, mappingCheck)
+        }
+    }
+}
@@ -1,21 +1,36 @@
-# Add project specific ProGuard rules here.
-# You can control the set of applied configuration files using the
-# proguardFiles setting in build.gradle.
+# Release keep rules. Libraries (Firebase, Retrofit, OkHttp, Glide, ZXing, WorkManager)
+# ship their own consumer rules; what is listed here is the app's own reflection.
 #
-# For more details, see
-#   http://developer.android.com/guide/developing/tools/proguard.html
+# Every class kept below for reflection must also be covered by
+# `reflectionMappedClasses` in build.gradle.kts, whose checkReleaseMapping task
+# fails the build if R8 renamed or dropped any of it.
 
-# If your project uses WebView with JS, uncomment the following
-# and specify the fully qualified class name to the JavaScript interface
-# class:
-#-keepclassmembers class fqcn.of.javascript.interface.for.webview {
-#   public *;
-#}
+# Readable release stack traces; the mapping file restores the names
+-keepattributes SourceFile,LineNumberTable
+-renamesourcefileattribute SourceFile
 
-# Uncomment this to preserve the line number information for
-# debugging stack traces.
-#-keepattributes SourceFile,LineNumberTable
+# Generic signatures and annotations: Gson, Retrofit and Firestore read them at runtime
+-keepattributes Signature,InnerClasses,EnclosingMethod,*Annotation*
 
-# If you keep the line number information, uncomment this to
-# hide the original source file name.
-#-renamesourcefileattribute SourceFile
\ No newline at end of file
+# ---- Firestore models -------------------------------------------------------------------
+# DocumentSnapshot.toObject() maps fields through the no-arg constructor and the
+# getters/setters by name (MenuCatalog); the rest are built by hand from snapshots but
+# are kept alike so a later toObject() cannot silently break.
+-keep class com.example.loyaltyapp.models.** {
+    <init>();
+    <fields>;
+    public <methods>;
+}
+
+# ---- Retrofit / Gson bodies -------------------------------------------------------------
+# Gson fills these by field name through reflection; full mode would otherwise strip the
+# default constructor and fields it never sees written.
+-keep class com.example.loyaltyapp.ApiService$VerifyResponse { <init>(); <fields>; }
+-keep class com.example.loyaltyapp.VerifyResponse { <init>(); <fields>; }
+-keep class com.example.loyaltyapp.EmailResponse { <init>(); <fields>; }
+-keep class com.example.loyaltyapp.VerifyRequest { <fields>; }
+-keep class com.example.loyaltyapp.EmailRequest { <fields>; }
+
+# Gson 2.10 has no bundled rules for R8 full mode: keep TypeToken and its generic subclasses
+-keep,allowobfuscation,allowshrinking class com.google.gson.reflect.TypeToken
+-keep,allowobfuscation,allowshrinking class * extends com.google.gson.reflect.TypeToken
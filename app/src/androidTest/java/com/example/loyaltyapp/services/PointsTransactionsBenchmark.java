@@ -0,0 +1,286 @@
+package com.example.loyaltyapp.services;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.loyaltyapp.ledger.LedgerException;
+import com.example.loyaltyapp.ledger.LoyaltyTransactionService;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.MemoryCacheSettings;
+import com.google.firebase.firestore.WriteBatch;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Contention benchmark for the points transactions, run against a local Firestore emulator
+ * ({@code firebase emulators:start --only firestore}, with rules that allow unauthenticated
+ * access). Every operation targets the same user document, which is the hot spot at the
+ * counter during peak hours.
+ *
+ * <p>Tuned with instrumentation arguments, e.g.
+ * {@code ./gradlew connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.benchConcurrency=16}:
+ * <ul>
+ *   <li>{@code benchConcurrency} – parallel callers (default 8)</li>
+ *   <li>{@code benchOps} – operations per scenario (default 200)</li>
+ *   <li>{@code benchHost} / {@code benchPort} – emulator address (default 10.0.2.2:8080)</li>
+ * </ul>
+ * Results go to logcat (tag {@value #TAG}) and to the instrumentation status output.
+ * Outcomes are counted apart: {@code refused} is the engine turning an operation down (used
+ * code, short balance...), {@code aborted} is Firestore giving up on contention after its
+ * retries, {@code failed} is anything else. The tests are skipped when the emulator is not
+ * reachable and fail when the operations do not all finish in time.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PointsTransactionsBenchmark {
+
+    private static final String TAG = "TxBenchmark";
+    private static final long OP_TIMEOUT_SEC = 60;
+
+    private static FirebaseFirestore db;
+
+    private int concurrency;
+    private int ops;
+    private String uid;
+
+    @Before
+    public void setUp() throws Exception {
+        Bundle args = InstrumentationRegistry.getArguments();
+        concurrency = Integer.parseInt(args.getString("benchConcurrency", "8"));
+        ops = Integer.parseInt(args.getString("benchOps", "200"));
+        String host = args.getString("benchHost", "10.0.2.2");
+        int port = Integer.parseInt(args.getString("benchPort", "8080"));
+
+        if (db == null) db = emulatorFirestore(host, port);
+
+        // Probe the emulator; skip instead of failing when it is not running
+        boolean reachable;
+        try {
+            Tasks.await(db.collection("bench").document("ping").set(new HashMap<String, Object>()),
+                    5, TimeUnit.SECONDS);
+            reachable = true;
+        } catch (TimeoutException | ExecutionException e) {
+            reachable = false;
+        }
+        assumeTrue("Firestore emulator not reachable at " + host + ":" + port, reachable);
+
+        uid = "bench_" + System.currentTimeMillis();
+        Map<String, Object> user = new HashMap<>();
+        user.put("points", 1_000_000L);
+        user.put("visits", 0L);
+        Tasks.await(db.collection("users").document(uid).set(user));
+    }
+
+    @Test
+    public void earn() throws Exception {
+        final String prefix = uid + "_v";
+        seed(ops, i -> {
+            Map<String, Object> v = new HashMap<>();
+            v.put("status", "pending");
+            v.put("points", 10L);
+            v.put("validForSec", 3600L);
+            v.put("createdAt", Timestamp.now());
+            return new Seed("earn_codes", prefix + i, v);
+        });
+
+        run("earn", (svc, i) ->
+                PointsTransactions.earn(svc, uid, prefix + i, System.currentTimeMillis(), false));
+    }
+
+    @Test
+    public void spend() throws Exception {
+        final String prefix = uid + "_r";
+        seed(ops, i -> {
+            Map<String, Object> c = new HashMap<>();
+            c.put("type", "REDEEM");
+            c.put("status", "ACTIVE");
+            c.put("userUid", uid);
+            c.put("costPoints", 5L);
+            c.put("itemName", "Bench item");
+            return new Seed("redeem_codes", prefix + i, c);
+        });
+
+        run("spend", (svc, i) ->
+                PointsTransactions.spend(svc, uid, prefix + i, 5));
+    }
+
+    @Test
+    public void redeem() throws Exception {
+        final String rewardId = uid + "_reward";
+        Map<String, Object> reward = new HashMap<>();
+        reward.put("name", "Bench reward");
+        reward.put("redeemPoints", 5L);
+        reward.put("active", true);
+        Tasks.await(db.collection("Rewards").document(rewardId).set(reward));
+
+        run("redeem", (svc, i) ->
+                PointsTransactions.redeem(svc, uid, rewardId));
+    }
+
+    // ---------------------------------------------------------------------------------------
+
+    private interface Op {
+        Task<?> start(LoyaltyTransactionService svc, int index);
+    }
+
+    /** One document to write before a run. */
+    private static final class Seed {
+        final String collection;
+        final String id;
+        final Map<String, Object> data;
+
+        Seed(String collection, String id, Map<String, Object> data) {
+            this.collection = collection;
+            this.id = id;
+            this.data = data;
+        }
+    }
+
+    private interface Doc {
+        Seed make(int index);
+    }
+
+    private void seed(int count, Doc doc) throws Exception {
+        for (int start = 0; start < count; start += 400) {
+            WriteBatch batch = db.batch();
+            for (int i = start; i < Math.min(count, start + 400); i++) {
+                Seed d = doc.make(i);
+                batch.set(db.collection(d.collection).document(d.id), d.data);
+            }
+            Tasks.await(batch.commit());
+        }
+    }
+
+    private void run(String name, Op op) throws InterruptedException {
+        final long[] latencyNanos = new long[ops];
+        final boolean[] ok = new boolean[ops];
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger attempts = new AtomicInteger();
+        final AtomicInteger refused = new AtomicInteger();
+        final AtomicInteger aborted = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        // Counts every run of a transaction body, so retries = attempts - ops
+        final LoyaltyTransactionService svc = PointsTransactions.service(db, attempts::incrementAndGet);
+
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        long wallStart = System.nanoTime();
+        for (int t = 0; t < concurrency; t++) {
+            pool.execute(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < ops) {
+                    long t0 = System.nanoTime();
+                    try {
+                        Tasks.await(op.start(svc, i), OP_TIMEOUT_SEC, TimeUnit.SECONDS);
+                        ok[i] = true;
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        // Refusals also surface as FirebaseFirestoreException (some as ABORTED),
+                        // with the engine's LedgerException as the cause
+                        if (isRefusal(cause)) {
+                            refused.incrementAndGet();
+                        } else if (cause instanceof FirebaseFirestoreException
+                                && ((FirebaseFirestoreException) cause).getCode()
+                                    == FirebaseFirestoreException.Code.ABORTED) {
+                            aborted.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                            Log.w(TAG, name + " #" + i + " failed", cause);
+                        }
+                    } catch (TimeoutException e) {
+                        failed.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    latencyNanos[i] = System.nanoTime() - t0;
+                }
+            });
+        }
+        pool.shutdown();
+        boolean drained = pool.awaitTermination(ops * OP_TIMEOUT_SEC, TimeUnit.SECONDS);
+        if (!drained) pool.shutdownNow();
+        assertTrue(name + ": operations still running after " + ops * OP_TIMEOUT_SEC + " s", drained);
+        long wallMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - wallStart);
+
+        List<Long> okLatencies = new ArrayList<>();
+        for (int i = 0; i < ops; i++) if (ok[i]) okLatencies.add(latencyNanos[i]);
+        long[] sorted = new long[okLatencies.size()];
+        for (int i = 0; i < sorted.length; i++) sorted[i] = okLatencies.get(i);
+        Arrays.sort(sorted);
+
+        int retries = Math.max(0, attempts.get() - ops);
+        String report = String.format(Locale.US,
+                "%s: ops=%d concurrency=%d ok=%d refused=%d aborted=%d failed=%d retries=%d "
+                        + "p50=%.1fms p95=%.1fms p99=%.1fms wall=%dms",
+                name, ops, concurrency, sorted.length, refused.get(), aborted.get(), failed.get(), retries,
+                percentileMs(sorted, 50), percentileMs(sorted, 95), percentileMs(sorted, 99), wallMs);
+        Log.i(TAG, report);
+
+        Bundle status = new Bundle();
+        status.putString("benchmark_" + name, report);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, status);
+    }
+
+    /** True when the engine turned the operation down, as opposed to the store failing it. */
+    private static boolean isRefusal(Throwable t) {
+        for (; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof LedgerException) {
+                LedgerException.Code code = ((LedgerException) t).getCode();
+                return code != LedgerException.Code.ABORTED && code != LedgerException.Code.UNAVAILABLE;
+            }
+        }
+        return false;
+    }
+
+    /** Nearest-rank percentile. */
+    private static double percentileMs(long[] sortedNanos, int p) {
+        if (sortedNanos.length == 0) return 0d;
+        int rank = (int) Math.ceil(p / 100d * sortedNanos.length);
+        return sortedNanos[Math.max(0, rank - 1)] / 1_000_000d;
+    }
+
+    /** Separate FirebaseApp so the emulator setting never leaks into the app's default instance. */
+    private static FirebaseFirestore emulatorFirestore(String host, int port) {
+        Context ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FirebaseApp app;
+        try {
+            app = FirebaseApp.getInstance("bench");
+        } catch (IllegalStateException e) {
+            app = FirebaseApp.initializeApp(ctx, FirebaseOptions.fromResource(ctx), "bench");
+        }
+        FirebaseFirestore fs = FirebaseFirestore.getInstance(app);
+        fs.useEmulator(host, port);
+        fs.setFirestoreSettings(new FirebaseFirestoreSettings.Builder()
+                .setLocalCacheSettings(MemoryCacheSettings.newBuilder().build())
+                .build());
+        return fs;
+    }
+}
@@ -12,9 +12,19 @@ import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
+import com.example.loyaltyapp.services.AppGate;
+
 
 public class BlockedActivity extends AppCompatActivity {
 
+    // Shown from a cached state too; step aside as soon as the server reopens the app
+    private final AppGate.Observer gateObserver = (active, message) -> {
+        if (active) {
+            startActivity(new Intent(this, MainActivity.class));
+            finish();
+        }
+    };
+
     @Override
     protected void onCreate(Bundle b) {
         super.onCreate(b);
@@ -37,6 +47,16 @@ public class BlockedActivity extends AppCompatActivity {
         quit.setOnClickListener(v -> finish());
     }
 
+    @Override protected void onStart() {
+        super.onStart();
+        AppGate.get(this).observe(gateObserver);
+    }
+
+    @Override protected void onStop() {
+        super.onStop();
+        AppGate.get(this).removeObserver(gateObserver);
+    }
+
     @Override public void onBackPressed() {
         // Optional: prevent "back" into the app
         super.onBackPressed();
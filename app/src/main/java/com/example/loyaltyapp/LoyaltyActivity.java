@@ -1,41 +1,47 @@
 package com.example.loyaltyapp;
 
+import android.annotation.SuppressLint;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.res.ColorStateList;
 import android.os.Bundle;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
 import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
 import androidx.annotation.IdRes;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.fragment.app.Fragment;
-import androidx.fragment.app.FragmentTransaction;
 
+import com.example.loyaltyapp.data.CatalogSnapshotStore;
+import com.example.loyaltyapp.data.SessionProfileCache;
+import com.example.loyaltyapp.data.UserProfileRepository;
 import com.example.loyaltyapp.fragments.ActivityFragment;
 import com.example.loyaltyapp.fragments.HomeFragment;
 import com.example.loyaltyapp.fragments.ProfileFragment;
 import com.example.loyaltyapp.fragments.RewarsdFragment;
 import com.example.loyaltyapp.fragments.ScanFragment;
+import com.example.loyaltyapp.metrics.StartupTrace;
+import com.example.loyaltyapp.models.User;
+import com.example.loyaltyapp.services.AppGate;
+import com.example.loyaltyapp.services.PointsTransactions;
+import com.example.loyaltyapp.services.ScanQueue;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.DocumentReference;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.FieldValue;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.ListenerRegistration;
-import com.google.firebase.firestore.SetOptions;
-
-import java.util.HashMap;
-import java.util.Map;
 
 public class LoyaltyActivity extends AppCompatActivity {
 
     private static final String KEY_SELECTED = "selected_menu";
 
-    private ListenerRegistration gateListener;
+    private final AppGate.Observer gateObserver = (active, message) -> {
+        if (!active) AppGate.showBlocked(this, message);
+    };
     private BottomNavigationView bottomNav;
 
     private int selectedItemId = R.id.homeFragment;
@@ -43,15 +49,29 @@ public class LoyaltyActivity extends AppCompatActivity {
     private boolean suppressNavCallback = false;
 
     private FirebaseAuth auth;
-    private FirebaseFirestore db;
     private String uid;
 
-    private final Map<Integer, Fragment> fragments = new HashMap<>(5);
+    private LoyaltyTabHost tabs;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        final long createdAt = SystemClock.elapsedRealtimeNanos();
+        StartupTrace trace = StartupTrace.get();
+        trace.begin("LoyaltyActivity.onCreate");
         super.onCreate(savedInstanceState);
+        trace.begin("LoyaltyActivity.setContentView");
         setContentView(R.layout.activity_loyalty); // must have nav_host_fragment & bottom_navigation
+        trace.end();
+        // Picks up the tabs the FragmentManager just restored, if any
+        tabs = new LoyaltyTabHost(getSupportFragmentManager(), R.id.nav_host_fragment, menuId -> {
+            trace.begin("LoyaltyActivity.createFragmentFor");
+            Fragment f = createFragmentFor(menuId);
+            trace.end();
+            return f;
+        });
+
+        // Start reading the saved catalog while the tabs are being built
+        CatalogSnapshotStore.get(this).preload();
 
         if (android.os.Build.VERSION.SDK_INT >= 33) {
             if (checkSelfPermission(android.Manifest.permission.POST_NOTIFICATIONS)
@@ -61,65 +81,71 @@ public class LoyaltyActivity extends AppCompatActivity {
         }
 
 
+        // First touch of the user document: also pays for Firestore's initialization
+        trace.begin("LoyaltyActivity.checkBirthdayReward");
         checkBirthdayReward();
+        trace.end();
 
         if (savedInstanceState != null) {
             selectedItemId = savedInstanceState.getInt(KEY_SELECTED, R.id.homeFragment);
         }
 
+        trace.begin("LoyaltyActivity.FirebaseAuth");
         auth = FirebaseAuth.getInstance();
-        db   = FirebaseFirestore.getInstance();
         FirebaseUser user = auth.getCurrentUser();
+        trace.end();
         if (user == null) {
+            trace.end();
             startActivity(new Intent(this, SignUpActivity.class));
             finish();
             return;
         }
         uid = user.getUid();
 
+        // Earn scans captured offline in a previous session still need to reach Firestore
+        ScanQueue scanQueue = ScanQueue.get(this);
+        if (!scanQueue.isEmpty()) scanQueue.scheduleSync();
+
         bottomNav = findViewById(R.id.bottom_navigation);
         bottomNav.setItemActiveIndicatorColor(null);
 
         // ou pour mettre une couleur transparente :
         bottomNav.setItemActiveIndicatorColor(ColorStateList.valueOf(getResources().getColor(android.R.color.transparent, getTheme())));
+        trace.begin("LoyaltyActivity.setupBottomNav");
         setupBottomNav();
+        trace.end();
+        attachScanPrewarm(bottomNav.findViewById(R.id.scanFragment));
 
+        trace.begin("LoyaltyActivity.firstTab");
         boolean requireProfileExtra = getIntent().getBooleanExtra("require_profile", false)
                 || getIntent().getBooleanExtra("force_profile", false);
 
-        if (requireProfileExtra) {
-            setProfileRequired(true, false);
-            selectTabProgrammatically(R.id.profileFragment);
-        } else {
-            checkProfileCompletenessAndRoute();
-        }
+        checkProfileCompletenessAndRoute(requireProfileExtra);
 
         // Ensure there is an initial fragment visible (prevents empty screen if listener not fired yet)
-        if (getSupportFragmentManager().findFragmentByTag(String.valueOf(selectedItemId)) == null) {
+        if (!tabs.isBuilt(selectedItemId)) {
             selectTabProgrammatically(selectedItemId);
         }
+        trace.end();
+        trace.markFirstFrame(this, "LoyaltyActivity.toFirstFrame", createdAt);
+
+        // Build the scan tab once the first screen is idle, not while it is being drawn
+        Looper.myQueue().addIdleHandler(() -> {
+            if (!isFinishing()) prewarmScanTab();
+            return false;
+        });
+        trace.end();
     }
     @Override protected void onStart() {
         super.onStart();
-        gateListener = db.collection("meta").document("app_status")
-                .addSnapshotListener((doc, err) -> {
-                    if (err != null || doc == null) return;
-                    boolean active = Boolean.TRUE.equals(doc.getBoolean("isActive"));
-                    if (!active) {
-                        Intent i = new Intent(this, BlockedActivity.class);
-                        i.putExtra("reason", doc.getString("message"));
-                        startActivity(i);
-                        finish();
-                    }
-                });
+        StartupTrace.get().begin("LoyaltyActivity.AppGate");
+        AppGate.get(this).observe(gateObserver);
+        StartupTrace.get().end();
     }
 
     @Override protected void onStop() {
         super.onStop();
-        if (gateListener != null) {
-            gateListener.remove();
-            gateListener = null;
-        }
+        AppGate.get(this).removeObserver(gateObserver);
     }
 
     private void setupBottomNav() {
@@ -135,6 +161,7 @@ public class LoyaltyActivity extends AppCompatActivity {
             switchTo(id);
             return true;
         });
+        bottomNav.setOnItemReselectedListener(item -> tabs.reselect(item.getItemId()));
     }
 
     public void selectTabProgrammatically(@IdRes int menuId) {
@@ -147,29 +174,14 @@ public class LoyaltyActivity extends AppCompatActivity {
     }
 
     private void switchTo(@IdRes int menuId) {
-        if (selectedItemId == menuId && fragments.containsKey(menuId)) return;
-
-        FragmentTransaction tx = getSupportFragmentManager().beginTransaction();
-
-        Fragment current = fragments.get(selectedItemId);
-        if (current != null && current.isAdded()) tx.hide(current);
-
-        Fragment target = fragments.get(menuId);
-        if (target == null) {
-            target = createFragmentFor(menuId);
-            fragments.put(menuId, target);
-            tx.add(R.id.nav_host_fragment, target, String.valueOf(menuId));
-        } else if (target.isAdded()) {
-            tx.show(target);
-        } else {
-            tx.add(R.id.nav_host_fragment, target, String.valueOf(menuId));
-        }
+        Fragment current = tabs.find(menuId);
+        if (selectedItemId == menuId && current != null && !current.isHidden()) return;
 
-        tx.setReorderingAllowed(true).commitAllowingStateLoss();
+        tabs.show(menuId);
         selectedItemId = menuId;
     }
 
-    private Fragment createFragmentFor(@IdRes int menuId) {
+    private static Fragment createFragmentFor(@IdRes int menuId) {
         if (menuId == R.id.homeFragment)          return new HomeFragment();
         if (menuId == R.id.navigation_activity)   return new ActivityFragment();
         if (menuId == R.id.scanFragment)          return new ScanFragment();
@@ -178,27 +190,43 @@ public class LoyaltyActivity extends AppCompatActivity {
         return new HomeFragment();
     }
 
-    private void checkProfileCompletenessAndRoute() {
-        db.collection("users").document(uid)
-                .get()
-                .addOnSuccessListener(this::handleUserDoc)
-                .addOnFailureListener(e -> {
-                    setProfileRequired(false, false);
-                    selectTabProgrammatically(selectedItemId);
-                });
+    /**
+     * @param required the launching screen already asked for the profile. MainActivity may
+     *                 have decided that from cached flags, so the snapshot checks it too.
+     */
+    private void checkProfileCompletenessAndRoute(boolean required) {
+        final Boolean assumedComplete;
+        if (required) {
+            assumedComplete = false;
+        } else {
+            FirebaseUser u = FirebaseAuth.getInstance().getCurrentUser();
+            SessionProfileCache cache = SessionProfileCache.get(this);
+            cache.start();
+            SessionProfileCache.Flags cached = u != null ? cache.read(u.getUid()) : null;
+            assumedComplete = cached != null ? cached.profileComplete : null;
+        }
+
+        // Route now from what we know; the snapshot below only corrects a stale answer
+        if (assumedComplete != null) routeForProfile(!assumedComplete, false);
+
+        UserProfileRepository.get().getOnce(new UserProfileRepository.Observer() {
+            @Override public void onUser(@NonNull User doc) {
+                if (assumedComplete == null || assumedComplete != doc.isProfileComplete()) handleUser(doc);
+            }
+            @Override public void onError(@NonNull Exception e) {
+                if (assumedComplete == null) routeForProfile(false, false);
+            }
+        });
     }
 
     private void checkBirthdayReward() {
         FirebaseUser u = FirebaseAuth.getInstance().getCurrentUser();
         if (u == null) return;
 
-        FirebaseFirestore db = FirebaseFirestore.getInstance();
-        DocumentReference userRef = db.collection("users").document(u.getUid());
-
-        userRef.get().addOnSuccessListener(doc -> {
+        UserProfileRepository.get().getOnce(doc -> {
             if (!doc.exists()) return;
 
-            String birthday = doc.getString("birthday");
+            String birthday = doc.getBirthday();
             if (birthday == null || birthday.isEmpty()) return;
 
             // Parse user's birthday (expected format: yyyy-MM-dd)
@@ -217,44 +245,32 @@ public class LoyaltyActivity extends AppCompatActivity {
                 String todayKey = String.format("%04d-%02d-%02d",
                         c.get(java.util.Calendar.YEAR), todayMonth, todayDay);
 
-                // Prevent multiple rewards in the same day
-                String lastRewardDate = doc.getString("lastBirthdayReward");
+                // Prevent multiple rewards in the same day (re-checked inside the transaction)
+                String lastRewardDate = doc.getLastBirthdayReward();
                 if (todayKey.equals(lastRewardDate)) {
                     return; // already rewarded today
                 }
 
-                Long currentPoints = doc.getLong("points");
-                if (currentPoints == null) currentPoints = 0L;
-                long newPoints = currentPoints + 15L;
-
-                Map<String, Object> update = new HashMap<>();
-                update.put("points", newPoints);
-                update.put("lastBirthdayReward", todayKey);
-                update.put("updatedAt", FieldValue.serverTimestamp());
-
-                userRef.set(update, SetOptions.merge())
-                        .addOnSuccessListener(unused ->
-                                Toast.makeText(this, "🎉 Happy Birthday! +15 points added!", Toast.LENGTH_LONG).show()
-                        );
+                // Check-and-increment in one transaction; concurrent opens cannot double-award
+                PointsTransactions.birthdayBonus(u.getUid(), todayKey)
+                        .addOnSuccessListener(awarded -> {
+                            if (Boolean.TRUE.equals(awarded)) {
+                                Toast.makeText(this, "🎉 Happy Birthday! +15 points added!", Toast.LENGTH_LONG).show();
+                            }
+                        });
             }
         });
     }
 
 
-    private void handleUserDoc(DocumentSnapshot doc) {
-        boolean missing = true;
-        if (doc != null && doc.exists()) {
-            String name = doc.getString("fullName");
-            String bday = doc.getString("birthday");
-            String gender = doc.getString("gender");
-            Boolean verified = doc.getBoolean("isVerified");
-            missing = (name == null || name.trim().isEmpty()
-                    || bday == null || bday.trim().isEmpty()
-                    || gender == null || gender.trim().isEmpty()
-                    || !Boolean.TRUE.equals(verified));
-        }
+    private void handleUser(User doc) {
+        routeForProfile(!doc.isProfileComplete(), true);
+    }
+
+    private void routeForProfile(boolean missing, boolean toast) {
+        if (isFinishing()) return;
         if (missing) {
-            setProfileRequired(true, true);
+            setProfileRequired(true, toast);
             selectTabProgrammatically(R.id.profileFragment);
         } else {
             setProfileRequired(false, false);
@@ -275,6 +291,36 @@ public class LoyaltyActivity extends AppCompatActivity {
         selectTabProgrammatically(R.id.homeFragment);
     }
 
+    // ---- Scan pre-warm ----------------------------------------------------------------------
+
+    /**
+     * Adds the scan tab hidden, so its views and decoder exist before the first tap. Always on,
+     * but only once the camera permission is granted: a hidden tab must never be the one
+     * asking for it.
+     */
+    private void prewarmScanTab() {
+        if (profileRequired || tabs.isBuilt(R.id.scanFragment)) return;
+        if (checkSelfPermission(android.Manifest.permission.CAMERA) != PackageManager.PERMISSION_GRANTED) return;
+        tabs.prebuild(R.id.scanFragment);
+    }
+
+    /**
+     * Opens the camera on touch-down of {@code entryPoint}; the click that switches to the
+     * scan tab follows some 100 ms later and finds the preview already running.
+     */
+    @SuppressLint("ClickableViewAccessibility")
+    public void attachScanPrewarm(@Nullable View entryPoint) {
+        if (entryPoint == null) return;
+        entryPoint.setOnTouchListener((v, e) -> {
+            if (e.getActionMasked() == MotionEvent.ACTION_DOWN && selectedItemId != R.id.scanFragment) {
+                prewarmScanTab();
+                Fragment scan = tabs.find(R.id.scanFragment);
+                if (scan instanceof ScanFragment && scan.isAdded()) ((ScanFragment) scan).prewarmCamera();
+            }
+            return false;
+        });
+    }
+
     public void openScanTab() {
         if (!profileRequired) selectTabProgrammatically(R.id.scanFragment);
         else {
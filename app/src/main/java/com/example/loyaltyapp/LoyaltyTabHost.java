@@ -0,0 +1,116 @@
+package com.example.loyaltyapp;
+
+import androidx.annotation.IdRes;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentManager;
+import androidx.fragment.app.FragmentTransaction;
+import androidx.lifecycle.Lifecycle;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The bottom-navigation tabs of {@link LoyaltyActivity}, one fragment per menu item, tagged
+ * with the item id. A tab is built on its first visit only and then kept: switching away
+ * hides it and caps it at STARTED, so its views, listeners and view model stay alive but it
+ * gets no onResume work while off screen; switching back shows it as it was.
+ *
+ * <p>The tabs the {@link FragmentManager} restores after a configuration change or process
+ * death are adopted when the host is created, so they are reused instead of being stacked
+ * under fresh copies. Create the host after {@code super.onCreate()}.
+ */
+final class LoyaltyTabHost {
+
+    interface Factory {
+        @NonNull Fragment create(@IdRes int menuId);
+    }
+
+    private final FragmentManager fm;
+    @IdRes private final int containerId;
+    private final Factory factory;
+    // Also holds tabs whose add is still pending, which findFragmentByTag cannot see yet
+    private final Map<Integer, Fragment> tabs = new HashMap<>(5);
+
+    LoyaltyTabHost(@NonNull FragmentManager fm, @IdRes int containerId, @NonNull Factory factory) {
+        this.fm = fm;
+        this.containerId = containerId;
+        this.factory = factory;
+        for (Fragment f : fm.getFragments()) {
+            if (f.getId() != containerId || f.getTag() == null) continue;
+            try {
+                tabs.put(Integer.parseInt(f.getTag()), f);
+            } catch (NumberFormatException ignored) {
+                // Not one of ours
+            }
+        }
+    }
+
+    /** The tab's fragment if it has been built (or restored), else null. */
+    @Nullable
+    Fragment find(@IdRes int menuId) {
+        return tabs.get(menuId);
+    }
+
+    boolean isBuilt(@IdRes int menuId) {
+        return find(menuId) != null;
+    }
+
+    /** Shows {@code menuId}, building it on first use, and sets every other tab aside. */
+    void show(@IdRes int menuId) {
+        FragmentTransaction tx = fm.beginTransaction().setReorderingAllowed(true);
+
+        Fragment target = find(menuId);
+        for (Fragment f : tabs.values()) {
+            if (f == target) continue;
+            if (!f.isHidden()) tx.hide(f);
+            tx.setMaxLifecycle(f, Lifecycle.State.STARTED);
+        }
+
+        if (target == null) {
+            target = factory.create(menuId);
+            tabs.put(menuId, target);
+            tx.add(containerId, target, tag(menuId));
+        } else if (target.isHidden()) {
+            tx.show(target);
+        }
+        tx.setMaxLifecycle(target, Lifecycle.State.RESUMED);
+
+        tx.commitAllowingStateLoss();
+    }
+
+    /**
+     * Builds {@code menuId} hidden, synchronously, so a tap right after cannot add it a
+     * second time. No-op if it exists or the state is already saved.
+     *
+     * @return the tab's fragment, or null if it could not be built now
+     */
+    @Nullable
+    Fragment prebuild(@IdRes int menuId) {
+        Fragment f = find(menuId);
+        if (f != null || fm.isStateSaved()) return f;
+
+        f = factory.create(menuId);
+        tabs.put(menuId, f);
+        fm.beginTransaction()
+                .add(containerId, f, tag(menuId))
+                .hide(f)
+                .setMaxLifecycle(f, Lifecycle.State.STARTED)
+                .setReorderingAllowed(true)
+                .commitNowAllowingStateLoss();
+        return f;
+    }
+
+    /** Reselecting the visible tab scrolls it back to the top, if it knows how. */
+    void reselect(@IdRes int menuId) {
+        Fragment f = find(menuId);
+        if (f instanceof LoyaltyActivity.ScrollToTop && f.isVisible()) {
+            ((LoyaltyActivity.ScrollToTop) f).scrollToTop();
+        }
+    }
+
+    private static String tag(@IdRes int menuId) {
+        return String.valueOf(menuId);
+    }
+}
@@ -7,25 +7,28 @@ import android.os.Looper;
 import android.view.WindowManager;
 
 import androidx.activity.EdgeToEdge;
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
+import com.example.loyaltyapp.data.SessionProfileCache;
+import com.example.loyaltyapp.data.UserProfileRepository;
+import com.example.loyaltyapp.models.User;
+import com.example.loyaltyapp.services.AppGate;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.ListenerRegistration;
 
 public class MainActivity extends AppCompatActivity {
 
 
-    private ListenerRegistration gateListener;
     private static final int SPLASH_DURATION = 2000; // 2 seconds
     private FirebaseAuth auth;
-    private FirebaseFirestore db;
+    private final AppGate.Observer gateObserver = (active, message) -> {
+        if (!active) AppGate.showBlocked(this, message);
+    };
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -40,7 +43,6 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main); // your splash layout (logo + background)
 
         auth = FirebaseAuth.getInstance();
-        db = FirebaseFirestore.getInstance();
 
         // Delay splash for 2 seconds then decide destination
         new Handler(Looper.getMainLooper()).postDelayed(this::decideNextScreen, SPLASH_DURATION);
@@ -48,28 +50,19 @@ public class MainActivity extends AppCompatActivity {
 
     @Override protected void onStart() {
         super.onStart();
-        gateListener = db.collection("meta").document("app_status")
-                .addSnapshotListener((doc, err) -> {
-                    if (err != null || doc == null) return;
-                    boolean active = Boolean.TRUE.equals(doc.getBoolean("isActive"));
-                    if (!active) {
-                        Intent i = new Intent(this, BlockedActivity.class);
-                        i.putExtra("reason", doc.getString("message"));
-                        startActivity(i);
-                        finish();
-                    }
-                });
+        // Answers at once from the last known state; the shared listener keeps it current
+        AppGate.get(this).observe(gateObserver);
     }
 
     @Override protected void onStop() {
         super.onStop();
-        if (gateListener != null) {
-            gateListener.remove();
-            gateListener = null;
-        }
+        AppGate.get(this).removeObserver(gateObserver);
     }
 
     private void decideNextScreen() {
+        // The gate may already have sent us to the blocked screen
+        if (isFinishing()) return;
+
         FirebaseUser user = auth.getCurrentUser();
 
         if (user == null) {
@@ -78,15 +71,24 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
-        // Check if verified in Firestore
-        db.collection("users").document(user.getUid())
-                .get()
-                .addOnSuccessListener(this::handleUserDoc)
-                .addOnFailureListener(e -> goToSignUp());
+        // Route from the flags saved at the last snapshot; LoyaltyActivity revalidates them
+        SessionProfileCache cache = SessionProfileCache.get(this);
+        cache.start();
+        SessionProfileCache.Flags flags = cache.read(user.getUid());
+        if (flags != null) {
+            goToLoyalty(!flags.verified);
+            return;
+        }
+
+        // First launch on this account: check in Firestore (shared listener; LoyaltyActivity reuses the snapshot)
+        UserProfileRepository.get().getOnce(new UserProfileRepository.Observer() {
+            @Override public void onUser(@NonNull User u) { handleUser(u); }
+            @Override public void onError(@NonNull Exception e) { goToSignUp(); }
+        });
     }
 
-    private void handleUserDoc(DocumentSnapshot snapshot) {
-        boolean verified = snapshot.exists() && Boolean.TRUE.equals(snapshot.getBoolean("isVerified"));
+    private void handleUser(User snapshot) {
+        boolean verified = snapshot.exists() && snapshot.isVerified();
 
         if (verified) goToLoyalty(false);
         else goToLoyalty(true);
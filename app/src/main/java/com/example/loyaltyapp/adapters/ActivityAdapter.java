@@ -6,21 +6,29 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 import com.example.loyaltyapp.R;
 import com.example.loyaltyapp.models.ActivityEvent;
 
-import java.text.SimpleDateFormat;
-import java.util.List;
-import java.util.Locale;
+import java.util.Objects;
 
-public class ActivityAdapter extends RecyclerView.Adapter<ActivityAdapter.VH> {
+public class ActivityAdapter extends ListAdapter<ActivityEvent, ActivityAdapter.VH> {
 
-    private final List<ActivityEvent> data;
-    private final SimpleDateFormat fmt = new SimpleDateFormat("EEE, dd MMM • HH:mm", Locale.getDefault());
+    public ActivityAdapter() {
+        super(DIFF);
+        setHasStableIds(true);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return idOf(getItem(position));
+    }
 
-    public ActivityAdapter(List<ActivityEvent> data) {
-        this.data = data;
+    /** The document ID, or for an event without one, its type, time and points. */
+    static long idOf(@NonNull ActivityEvent e) {
+        return e.id != null ? StableIds.of(e.id) : StableIds.ofContent(e.type, e.ts, e.points);
     }
 
     @NonNull @Override
@@ -31,70 +39,38 @@ public class ActivityAdapter extends RecyclerView.Adapter<ActivityAdapter.VH> {
 
     @Override
     public void onBindViewHolder(@NonNull VH h, int pos) {
-        ActivityEvent e = data.get(pos);
-
-        // ---- Title
-        String title;
-        if ("scan".equals(e.type)) {
-            title = "Scan" + (e.storeName != null && !e.storeName.isEmpty() ? " — " + e.storeName : "");
-        } else if ("redemption".equals(e.type) || "redeem".equals(e.type)) {
-            title = "Redemption";
-        } else if ("bonus".equals(e.type)) {
-            title = "Bonus";
-        } else {
-            title = "Activity";
-        }
-        h.activityTitle.setText(title);
-
-        // ---- Date/time
-        if (e.ts != null) {
-            h.activityDateTime.setText(fmt.format(e.ts.toDate()));
-        } else {
-            h.activityDateTime.setText("—");
+        // Everything shown here was prepared once in ActivityEvent.fromDoc
+        ActivityEvent e = getItem(pos);
+        h.activityTitle.setText(e.title);
+        h.activityDateTime.setText(e.dateText);
+        h.activityPoints.setText(e.pointsText);
+        h.activityPoints.setTextColor(e.pointsColor);
+        // Resource setters inflate a new Drawable, so skip them when the recycled row already matches
+        if (h.boundIconRes != e.iconRes) {
+            h.activityIcon.setImageResource(e.iconRes);
+            h.boundIconRes = e.iconRes;
         }
-
-        // ---- Points display
-        int displayPts = e.points;
-        // For redemption, ensure points are shown negative even if stored positive
-        if (("redemption".equals(e.type) || "redeem".equals(e.type)) && displayPts > 0) {
-            displayPts = -displayPts;
-        }
-
-        String sign = displayPts > 0 ? "+" : ""; // negatives already include '-'
-        h.activityPoints.setText(sign + displayPts);
-
-        // ---- Icon + background + text color
-        if ("scan".equals(e.type) || "earn".equals(e.type)) {
-            // Earned points
-            h.activityIcon.setImageResource(R.drawable.ic_scan);
-            h.iconBackground.setBackgroundResource(R.drawable.circle_background_earn); // green-ish bg
-            h.activityPoints.setTextColor(0xFF4CAF50); // 🟩 green
-        } else if ("redemption".equals(e.type) || "redeem".equals(e.type) || "spend".equals(e.type)) {
-            // Redeemed points
-            h.activityIcon.setImageResource(R.drawable.ic_gift);
-            h.iconBackground.setBackgroundResource(R.drawable.circle_background_spend); // red-ish bg (if you have one)
-            h.activityPoints.setTextColor(0xFFD32F2F); // 🔴 red
-        } else if ("bonus".equals(e.type)) {
-            // Bonus points
-            h.activityIcon.setImageResource(R.drawable.ic_star);
-            h.iconBackground.setBackgroundResource(R.drawable.circle_background_bonus); // yellow-ish bg
-            h.activityPoints.setTextColor(0xFFFFC107); // 🟡 yellow
-        } else {
-            // Default
-            h.activityIcon.setImageResource(R.drawable.ic_star);
-            h.iconBackground.setBackgroundResource(R.drawable.circle_background_bonus);
-            h.activityPoints.setTextColor(0xFFFFC107); // 🟡 yellow default
+        if (h.boundIconBgRes != e.iconBgRes) {
+            h.iconBackground.setBackgroundResource(e.iconBgRes);
+            h.boundIconBgRes = e.iconBgRes;
         }
     }
 
-
-    @Override
-    public int getItemCount() { return data.size(); }
+    static final DiffUtil.ItemCallback<ActivityEvent> DIFF = new DiffUtil.ItemCallback<ActivityEvent>() {
+        @Override public boolean areItemsTheSame(@NonNull ActivityEvent a, @NonNull ActivityEvent b) { return idOf(a) == idOf(b); }
+        @Override public boolean areContentsTheSame(@NonNull ActivityEvent a, @NonNull ActivityEvent b) {
+            return a.points == b.points
+                    && Objects.equals(a.type, b.type)
+                    && Objects.equals(a.storeName, b.storeName)
+                    && Objects.equals(a.ts, b.ts);
+        }
+    };
 
     static class VH extends RecyclerView.ViewHolder {
         View iconBackground;
         ImageView activityIcon;
         TextView activityTitle, activityDateTime, activityDetails, activityPoints;
+        int boundIconRes, boundIconBgRes;
 
         VH(@NonNull View v) {
             super(v);
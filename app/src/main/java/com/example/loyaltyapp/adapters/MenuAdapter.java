@@ -7,29 +7,44 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 import com.example.loyaltyapp.R;
+import com.example.loyaltyapp.adapters.StableIds;
 import com.example.loyaltyapp.models.MenuItemModel;
 
 import java.util.List;
+import java.util.Objects;
 
-public class MenuAdapter extends RecyclerView.Adapter<MenuAdapter.VH> {
+public class MenuAdapter extends ListAdapter<MenuItemModel, MenuAdapter.VH> {
 
     public interface OnItemClick { void onClick(MenuItemModel item); }
 
-    private List<MenuItemModel> data;
     private final OnItemClick onItemClick;
 
     public MenuAdapter(List<MenuItemModel> data, OnItemClick onItemClick) {
-        this.data = data;
+        super(DIFF);
         this.onItemClick = onItemClick;
+        setHasStableIds(true);
+        submitList(data);
     }
 
+    /** Diffed off the main thread; only changed rows are rebound (and reload their image). */
     public void submit(List<MenuItemModel> items) {
-        this.data = items;
-        notifyDataSetChanged();
+        submitList(items);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return idOf(getItem(position));
+    }
+
+    /** The document ID, or for an item without one, its name and price. */
+    static long idOf(@NonNull MenuItemModel m) {
+        return m.getId() != null ? StableIds.of(m.getId()) : StableIds.ofContent(m.getName(), m.getPriceMAD());
     }
 
     @NonNull @Override
@@ -41,7 +56,7 @@ public class MenuAdapter extends RecyclerView.Adapter<MenuAdapter.VH> {
 
     @Override
     public void onBindViewHolder(@NonNull VH h, int pos) {
-        MenuItemModel m = data.get(pos);
+        MenuItemModel m = getItem(pos);
         h.title.setText(m.getName());
         h.price.setText(m.getPriceMAD() == null ? "" : (m.getPriceMAD().intValue() + " MAD"));
 
@@ -54,7 +69,14 @@ public class MenuAdapter extends RecyclerView.Adapter<MenuAdapter.VH> {
         });
     }
 
-    @Override public int getItemCount() { return data == null ? 0 : data.size(); }
+    static final DiffUtil.ItemCallback<MenuItemModel> DIFF = new DiffUtil.ItemCallback<MenuItemModel>() {
+        @Override public boolean areItemsTheSame(@NonNull MenuItemModel a, @NonNull MenuItemModel b) { return idOf(a) == idOf(b); }
+        @Override public boolean areContentsTheSame(@NonNull MenuItemModel a, @NonNull MenuItemModel b) {
+            return Objects.equals(a.getName(), b.getName())
+                    && Objects.equals(a.getPriceMAD(), b.getPriceMAD())
+                    && Objects.equals(a.getImageUrl(), b.getImageUrl());
+        }
+    };
 
     static class VH extends RecyclerView.ViewHolder {
         ImageView image;
@@ -0,0 +1,49 @@
+package com.example.loyaltyapp.adapters;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Maps Firestore document IDs to RecyclerView stable IDs. Rows without a document ID use
+ * {@link #ofContent}, never {@code RecyclerView.NO_ID}: with stable IDs on, rows sharing an
+ * ID are taken for the same item.
+ */
+public final class StableIds {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private StableIds() {}
+
+    /** 64-bit FNV-1a of the document ID; collisions are negligible at list sizes we show. */
+    public static long of(@NonNull String id) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < id.length(); i++) {
+            h ^= id.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return notNoId(h);
+    }
+
+    /**
+     * For a row without a document ID: FNV-1a over the hash codes of the fields that identify
+     * it, so the ID survives rows being inserted or removed around it.
+     */
+    public static long ofContent(@Nullable Object... parts) {
+        long h = FNV_OFFSET;
+        if (parts != null) {
+            for (Object p : parts) {
+                int v = p == null ? 0 : p.hashCode();
+                for (int shift = 0; shift < 32; shift += 8) {
+                    h ^= (v >>> shift) & 0xFF;
+                    h *= FNV_PRIME;
+                }
+            }
+        }
+        return notNoId(h);
+    }
+
+    private static long notNoId(long h) {
+        return h == -1L ? 0L : h; // -1 is RecyclerView.NO_ID
+    }
+}
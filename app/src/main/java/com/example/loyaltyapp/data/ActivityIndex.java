@@ -0,0 +1,119 @@
+package com.example.loyaltyapp.data;
+
+import androidx.annotation.NonNull;
+
+import com.example.loyaltyapp.models.ActivityEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory index over the loaded activity feed for the type/date chips.
+ * Events are bucketed per type and kept newest-first next to a parallel array of
+ * epoch millis, so a date range is two binary searches and a query is O(log n + k)
+ * without allocating.
+ */
+public final class ActivityIndex {
+
+    public static final String ALL = "all";
+
+    /** Events without a timestamp sort last and never match a bounded range. */
+    private static final long NO_TS = Long.MIN_VALUE;
+
+    private static final class Bucket {
+        ActivityEvent[] events = new ActivityEvent[0];
+        long[] millis = new long[0];
+        int size;
+        int timed;  // events with a timestamp; they come first
+
+        void add(ActivityEvent e, long ms) {
+            events[size] = e;
+            millis[size] = ms;
+            size++;
+            if (ms != NO_TS) timed++;
+        }
+    }
+
+    private final Map<String, Bucket> byType = new HashMap<>();
+    private Bucket all = new Bucket();
+
+    /** Rebuilds the index; call whenever the loaded feed changes (not on filter changes). */
+    public void rebuild(@NonNull List<ActivityEvent> events) {
+        List<ActivityEvent> sorted = new ArrayList<>(events);
+        // Stable sort newest-first; the feed usually arrives in this order already
+        Collections.sort(sorted, (a, b) -> Long.compare(millisOf(b), millisOf(a)));
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (ActivityEvent e : sorted) {
+            Integer c = counts.get(e.type);
+            counts.put(e.type, c == null ? 1 : c + 1);
+        }
+
+        byType.clear();
+        for (Map.Entry<String, Integer> c : counts.entrySet()) {
+            byType.put(c.getKey(), sized(c.getValue()));
+        }
+        all = sized(sorted.size());
+
+        for (ActivityEvent e : sorted) {
+            long ms = millisOf(e);
+            all.add(e, ms);
+            byType.get(e.type).add(e, ms);
+        }
+    }
+
+    /**
+     * Appends the matching events, newest first, to {@code out}.
+     *
+     * @param type       an event type, or {@link #ALL}
+     * @param fromMillis inclusive lower bound, or {@link Long#MIN_VALUE} for none
+     * @param toMillis   inclusive upper bound, or {@link Long#MAX_VALUE} for none
+     */
+    public void query(@NonNull String type, long fromMillis, long toMillis, @NonNull List<ActivityEvent> out) {
+        Bucket b = ALL.equals(type) ? all : byType.get(type);
+        if (b == null || b.size == 0) return;
+
+        boolean bounded = fromMillis != Long.MIN_VALUE || toMillis != Long.MAX_VALUE;
+        // Either bound alone is enough to leave out the events without a timestamp
+        int size = bounded ? b.timed : b.size;
+        int start = firstAtOrBelow(b.millis, size, toMillis);
+        int end = fromMillis == Long.MIN_VALUE ? size : firstBelow(b.millis, size, fromMillis);
+        for (int i = start; i < end; i++) out.add(b.events[i]);
+    }
+
+    private static Bucket sized(int n) {
+        Bucket b = new Bucket();
+        b.events = new ActivityEvent[n];
+        b.millis = new long[n];
+        return b;
+    }
+
+    private static long millisOf(ActivityEvent e) {
+        return e.ts != null ? e.ts.toDate().getTime() : NO_TS;
+    }
+
+    /** First index whose value is <= bound in a descending array. */
+    private static int firstAtOrBelow(long[] desc, int size, long bound) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (desc[mid] > bound) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /** First index whose value is < bound in a descending array. */
+    private static int firstBelow(long[] desc, int size, long bound) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (desc[mid] >= bound) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
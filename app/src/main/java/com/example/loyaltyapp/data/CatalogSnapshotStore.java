@@ -0,0 +1,283 @@
+package com.example.loyaltyapp.data;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.loyaltyapp.models.MenuItemModel;
+import com.example.loyaltyapp.models.Rewards;
+import com.google.firebase.Timestamp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * On-disk copy of the catalog data Home and Rewards need for their first frame:
+ * available menu items, active rewards and the home banner config.
+ * Stored as a small versioned binary file (DataOutputStream, no reflection) and
+ * streamed back in on a background thread; screens render it, then revalidate
+ * against Firestore and write the fresh data back here.
+ */
+public final class CatalogSnapshotStore {
+
+    private static final String TAG = "CatalogSnapshotStore";
+    private static final String FILE_NAME = "catalog.snap";
+    private static final int MAGIC = 0x4C434154; // "LCAT"
+    private static final int VERSION = 1;
+
+    // Banner value tags
+    private static final byte T_STRING = 1, T_BOOL = 2, T_LONG = 3, T_DOUBLE = 4, T_TIMESTAMP = 5;
+
+    public interface Callback {
+        void onLoaded(@NonNull Snapshot snapshot);
+    }
+
+    /** Immutable view of what is on disk. Empty lists / null banner when nothing was saved. */
+    public static final class Snapshot {
+        public final List<MenuItemModel> menu;
+        public final List<Rewards> rewards;
+        @Nullable public final Map<String, Object> banner;
+
+        Snapshot(List<MenuItemModel> menu, List<Rewards> rewards, @Nullable Map<String, Object> banner) {
+            this.menu = Collections.unmodifiableList(menu);
+            this.rewards = Collections.unmodifiableList(rewards);
+            this.banner = banner == null ? null : Collections.unmodifiableMap(banner);
+        }
+
+        public boolean isEmpty() {
+            return menu.isEmpty() && rewards.isEmpty() && banner == null;
+        }
+    }
+
+    private static CatalogSnapshotStore instance;
+
+    public static synchronized CatalogSnapshotStore get(@NonNull Context context) {
+        if (instance == null) instance = new CatalogSnapshotStore(context.getApplicationContext());
+        return instance;
+    }
+
+    private final File file;
+    private final ExecutorService io = Executors.newSingleThreadExecutor();
+    private final Handler main = new Handler(Looper.getMainLooper());
+
+    // Guarded by this; null until the file has been read once
+    @Nullable private Snapshot current;
+
+    private CatalogSnapshotStore(Context appContext) {
+        this.file = new File(appContext.getFilesDir(), FILE_NAME);
+    }
+
+    /** Starts reading the file early (e.g. from Activity.onCreate) so later loads are instant. */
+    public void preload() {
+        io.execute(this::ensureLoaded);
+    }
+
+    /** Delivers the snapshot on the main thread; reads the file on first use. */
+    public void load(@NonNull Callback cb) {
+        Snapshot ready;
+        synchronized (this) { ready = current; }
+        if (ready != null) {
+            cb.onLoaded(ready);
+            return;
+        }
+        io.execute(() -> {
+            Snapshot s = ensureLoaded();
+            main.post(() -> cb.onLoaded(s));
+        });
+    }
+
+    public void saveMenu(@NonNull List<MenuItemModel> menu) {
+        final List<MenuItemModel> copy = new ArrayList<>(menu);
+        io.execute(() -> {
+            Snapshot s = ensureLoaded();
+            write(new Snapshot(copy, s.rewards, s.banner));
+        });
+    }
+
+    public void saveRewards(@NonNull List<Rewards> rewards) {
+        final List<Rewards> copy = new ArrayList<>(rewards);
+        io.execute(() -> {
+            Snapshot s = ensureLoaded();
+            write(new Snapshot(s.menu, copy, s.banner));
+        });
+    }
+
+    public void saveBanner(@Nullable Map<String, Object> banner) {
+        final Map<String, Object> copy = banner == null ? null : new HashMap<>(banner);
+        io.execute(() -> {
+            Snapshot s = ensureLoaded();
+            write(new Snapshot(s.menu, s.rewards, copy));
+        });
+    }
+
+    // -------------- IO (executor thread only) --------------
+
+    private Snapshot ensureLoaded() {
+        synchronized (this) {
+            if (current != null) return current;
+        }
+        Snapshot s = read();
+        synchronized (this) {
+            if (current == null) current = s;
+            return current;
+        }
+    }
+
+    private Snapshot read() {
+        List<MenuItemModel> menu = new ArrayList<>();
+        List<Rewards> rewards = new ArrayList<>();
+        Map<String, Object> banner = null;
+        if (!file.exists()) return new Snapshot(menu, rewards, null);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return new Snapshot(menu, rewards, null);
+            }
+
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                MenuItemModel m = new MenuItemModel();
+                m.setId(readStr(in));
+                m.setName(readStr(in));
+                m.setPriceMAD(in.readBoolean() ? in.readDouble() : null);
+                m.setCategory(readStr(in));
+                m.setImageUrl(readStr(in));
+                m.setIsAvailable(in.readBoolean());
+                m.setIsPopular(in.readBoolean());
+                m.setPopularityScore(in.readBoolean() ? in.readLong() : null);
+                menu.add(m);
+            }
+
+            n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                Rewards r = new Rewards();
+                r.id = readStr(in);
+                r.name = readStr(in);
+                r.priceMAD = in.readDouble();
+                r.redeemPoints = in.readInt();
+                r.imagePath = readStr(in);
+                r.category = readStr(in);
+                r.active = in.readBoolean();
+                rewards.add(r);
+            }
+
+            n = in.readInt();
+            if (n >= 0) {
+                banner = new HashMap<>();
+                for (int i = 0; i < n; i++) {
+                    String key = in.readUTF();
+                    byte tag = in.readByte();
+                    switch (tag) {
+                        case T_STRING:    banner.put(key, in.readUTF()); break;
+                        case T_BOOL:      banner.put(key, in.readBoolean()); break;
+                        case T_LONG:      banner.put(key, in.readLong()); break;
+                        case T_DOUBLE:    banner.put(key, in.readDouble()); break;
+                        case T_TIMESTAMP: banner.put(key, new Timestamp(in.readLong(), in.readInt())); break;
+                        default: throw new IOException("Unknown banner tag " + tag);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding unreadable catalog snapshot", e);
+            return new Snapshot(new ArrayList<MenuItemModel>(), new ArrayList<Rewards>(), null);
+        }
+        return new Snapshot(menu, rewards, banner);
+    }
+
+    private void write(Snapshot s) {
+        synchronized (this) { current = s; }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt(s.menu.size());
+            for (MenuItemModel m : s.menu) {
+                writeStr(out, m.getId());
+                writeStr(out, m.getName());
+                out.writeBoolean(m.getPriceMAD() != null);
+                if (m.getPriceMAD() != null) out.writeDouble(m.getPriceMAD());
+                writeStr(out, m.getCategory());
+                writeStr(out, m.getImageUrl());
+                out.writeBoolean(Boolean.TRUE.equals(m.getIsAvailable()));
+                out.writeBoolean(Boolean.TRUE.equals(m.getIsPopular()));
+                out.writeBoolean(m.getPopularityScore() != null);
+                if (m.getPopularityScore() != null) out.writeLong(m.getPopularityScore());
+            }
+
+            out.writeInt(s.rewards.size());
+            for (Rewards r : s.rewards) {
+                writeStr(out, r.id);
+                writeStr(out, r.name);
+                out.writeDouble(r.priceMAD);
+                out.writeInt(r.redeemPoints);
+                writeStr(out, r.imagePath);
+                writeStr(out, r.category);
+                out.writeBoolean(r.active);
+            }
+
+            if (s.banner == null) {
+                out.writeInt(-1);
+            } else {
+                // Only the value types the banner actually uses; anything else is dropped
+                Map<String, Object> kept = new HashMap<>();
+                for (Map.Entry<String, Object> e : s.banner.entrySet()) {
+                    Object v = e.getValue();
+                    if (v instanceof String || v instanceof Boolean || v instanceof Long
+                            || v instanceof Double || v instanceof Timestamp) {
+                        kept.put(e.getKey(), v);
+                    }
+                }
+                out.writeInt(kept.size());
+                for (Map.Entry<String, Object> e : kept.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    Object v = e.getValue();
+                    if (v instanceof String) {
+                        out.writeByte(T_STRING); out.writeUTF((String) v);
+                    } else if (v instanceof Boolean) {
+                        out.writeByte(T_BOOL); out.writeBoolean((Boolean) v);
+                    } else if (v instanceof Long) {
+                        out.writeByte(T_LONG); out.writeLong((Long) v);
+                    } else if (v instanceof Double) {
+                        out.writeByte(T_DOUBLE); out.writeDouble((Double) v);
+                    } else {
+                        Timestamp t = (Timestamp) v;
+                        out.writeByte(T_TIMESTAMP); out.writeLong(t.getSeconds()); out.writeInt(t.getNanoseconds());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write catalog snapshot", e);
+            return;
+        }
+        if (!tmp.renameTo(file)) Log.e(TAG, "Failed to replace catalog snapshot");
+    }
+
+    private static void writeStr(DataOutputStream out, @Nullable String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) out.writeUTF(s);
+    }
+
+    @Nullable
+    private static String readStr(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
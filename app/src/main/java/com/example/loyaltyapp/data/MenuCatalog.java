@@ -0,0 +1,160 @@
+package com.example.loyaltyapp.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.loyaltyapp.models.MenuItemModel;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process-wide copy of the available menu_items, kept current by one snapshot listener
+ * and indexed by category. Chip switches on Home read from here instead of attaching
+ * a new Firestore query each time.
+ */
+public final class MenuCatalog {
+
+    private static final String TAG = "MenuCatalog";
+    private static final int POPULAR_LIMIT = 12;
+    private static final int CATEGORY_LIMIT = 24;
+
+    public interface Observer {
+        void onCatalogChanged(@NonNull MenuCatalog catalog);
+    }
+
+    private static MenuCatalog instance;
+
+    public static synchronized MenuCatalog get(@NonNull Context context) {
+        if (instance == null) instance = new MenuCatalog(CatalogSnapshotStore.get(context));
+        return instance;
+    }
+
+    private final CatalogSnapshotStore store;
+    private final List<Observer> observers = new CopyOnWriteArrayList<>();
+    private ListenerRegistration registration;
+    private boolean loaded = false;
+    private boolean diskRequested = false;
+
+    // Published views; replaced wholesale on every snapshot, never mutated
+    private List<MenuItemModel> items = Collections.emptyList();
+    private List<MenuItemModel> popular = Collections.emptyList();
+    private Map<String, List<MenuItemModel>> byCategory = Collections.emptyMap();
+
+    private MenuCatalog(CatalogSnapshotStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Registers an observer and notifies it right away if the catalog is already loaded.
+     * On a cold start the last saved catalog is published first, then the listener refreshes it.
+     */
+    public void observe(@NonNull Observer o) {
+        observers.add(o);
+        if (registration == null) start();
+        if (!loaded && !diskRequested) {
+            diskRequested = true;
+            store.load(snapshot -> {
+                if (!loaded && !snapshot.menu.isEmpty()) publish(snapshot.menu);
+            });
+        }
+        if (loaded) o.onCatalogChanged(this);
+    }
+
+    /** Detaches the listener once the last observer is gone. */
+    public void removeObserver(@NonNull Observer o) {
+        observers.remove(o);
+        if (observers.isEmpty() && registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+
+    public boolean isLoaded() { return loaded; }
+
+    @NonNull public List<MenuItemModel> all() { return items; }
+
+    /** Popular items, highest popularityScore first. */
+    @NonNull public List<MenuItemModel> popular() { return popular; }
+
+    /** Items of one category, sorted by name. */
+    @NonNull
+    public List<MenuItemModel> category(@NonNull String category) {
+        List<MenuItemModel> list = byCategory.get(category);
+        return list != null ? list : Collections.<MenuItemModel>emptyList();
+    }
+
+    /** Replaces the catalog contents; observers are notified. */
+    void publish(@NonNull List<MenuItemModel> available) {
+        Map<String, List<MenuItemModel>> cats = new HashMap<>();
+        List<MenuItemModel> pop = new ArrayList<>();
+        for (MenuItemModel m : available) {
+            if (m.getCategory() != null) {
+                List<MenuItemModel> l = cats.get(m.getCategory());
+                if (l == null) cats.put(m.getCategory(), l = new ArrayList<>());
+                l.add(m);
+            }
+            if (Boolean.TRUE.equals(m.getIsPopular())) pop.add(m);
+        }
+
+        Comparator<MenuItemModel> byName = (a, b) -> {
+            String x = a.getName() != null ? a.getName() : "";
+            String y = b.getName() != null ? b.getName() : "";
+            return x.compareTo(y);
+        };
+        Map<String, List<MenuItemModel>> frozen = new HashMap<>();
+        for (Map.Entry<String, List<MenuItemModel>> e : cats.entrySet()) {
+            List<MenuItemModel> l = e.getValue();
+            Collections.sort(l, byName);
+            frozen.put(e.getKey(), Collections.unmodifiableList(
+                    new ArrayList<>(l.subList(0, Math.min(CATEGORY_LIMIT, l.size())))));
+        }
+        Collections.sort(pop, (a, b) -> {
+            long x = a.getPopularityScore() != null ? a.getPopularityScore() : 0L;
+            long y = b.getPopularityScore() != null ? b.getPopularityScore() : 0L;
+            return Long.compare(y, x);
+        });
+
+        items = Collections.unmodifiableList(new ArrayList<>(available));
+        popular = Collections.unmodifiableList(new ArrayList<>(pop.subList(0, Math.min(POPULAR_LIMIT, pop.size()))));
+        byCategory = frozen;
+        loaded = true;
+        for (Observer o : observers) o.onCatalogChanged(this);
+    }
+
+    private void start() {
+        registration = FirebaseFirestore.getInstance()
+                .collection("menu_items")
+                .whereEqualTo("isAvailable", true)
+                .addSnapshotListener((QuerySnapshot snap, FirebaseFirestoreException err) -> {
+                    if (err != null) {
+                        Log.e(TAG, "Menu listener failed", err);
+                        registration = null;
+                        return;
+                    }
+                    if (snap == null) return;
+                    List<MenuItemModel> available = new ArrayList<>(snap.size());
+                    for (DocumentSnapshot d : snap.getDocuments()) {
+                        MenuItemModel m = d.toObject(MenuItemModel.class);
+                        if (m != null) {
+                            m.setId(d.getId());
+                            available.add(m);
+                        }
+                    }
+                    publish(available);
+                    store.saveMenu(available);
+                });
+    }
+}
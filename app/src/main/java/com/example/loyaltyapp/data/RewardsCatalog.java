@@ -0,0 +1,222 @@
+package com.example.loyaltyapp.data;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.loyaltyapp.models.Rewards;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide copy of the active Rewards, sorted by redeemPoints and indexed by category.
+ * The whole active list is fetched with one query and category chips filter it locally.
+ * The disk snapshot is shown first on a cold start; after a fetch the list is considered
+ * fresh for a few minutes, so reopening the tab usually costs no query at all.
+ */
+public final class RewardsCatalog {
+
+    private static final String TAG = "RewardsCatalog";
+
+    public static final String ALL = "all";
+    /** Returned by {@link #cheapest(String)} when a filter has no rewards. */
+    public static final int NONE = Integer.MAX_VALUE;
+
+    private static final long FRESH_MS = 5 * 60 * 1000L;
+
+    private static final String COL_REWARDS = "Rewards";
+    private static final String F_ACTIVE    = "active";
+    private static final String F_CATEGORY  = "category";
+    private static final String F_NAME      = "name";
+    private static final String F_IMAGE     = "imagePath";
+    private static final String F_PRICE     = "priceMAD";
+    private static final String F_POINTS    = "redeemPoints";
+
+    public interface Callback {
+        void onRewards(@NonNull RewardsCatalog catalog);
+        default void onError(@NonNull Exception e) {}
+    }
+
+    private static RewardsCatalog instance;
+
+    public static synchronized RewardsCatalog get(@NonNull Context context) {
+        if (instance == null) instance = new RewardsCatalog(CatalogSnapshotStore.get(context));
+        return instance;
+    }
+
+    private final CatalogSnapshotStore store;
+    private final List<Callback> waiting = new ArrayList<>();
+    private boolean loaded = false;
+    private boolean diskRequested = false;
+    private boolean fetching = false;
+    private long fetchedAt = 0L;
+
+    // Whether Rewards has the (active, redeemPoints) composite index. Unknown until the
+    // first ordered query answers; once it is known to be missing the session sticks
+    // to the unordered query instead of paying a FAILED_PRECONDITION round trip each time.
+    @Nullable private Boolean orderIndexed;
+
+    // Published views; replaced wholesale on every fetch, never mutated
+    private List<Rewards> all = Collections.emptyList();
+    private Map<String, List<Rewards>> byCategory = Collections.emptyMap();
+
+    private RewardsCatalog(CatalogSnapshotStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Delivers the catalog on the main thread: right away if it is loaded, from disk on a
+     * cold start, and again once a fetch answers. No query is made while the loaded list is
+     * still fresh unless {@code forceRefresh} is set (pull-to-refresh).
+     */
+    public void load(boolean forceRefresh, @NonNull Callback cb) {
+        if (loaded) cb.onRewards(this);
+
+        boolean fresh = fetchedAt != 0L && SystemClock.elapsedRealtime() - fetchedAt < FRESH_MS;
+        if (fresh && !forceRefresh) return;
+
+        waiting.add(cb);
+        if (!loaded && !diskRequested) {
+            diskRequested = true;
+            store.load(snapshot -> {
+                if (loaded || snapshot.rewards.isEmpty()) return;
+                publish(snapshot.rewards);
+                List<Callback> copy = new ArrayList<>(waiting);
+                for (Callback c : copy) c.onRewards(this);
+            });
+        }
+        if (!fetching) fetch();
+    }
+
+    public boolean isLoaded() { return loaded; }
+
+    /** Active rewards for a category (or {@link #ALL}), cheapest first. */
+    @NonNull
+    public List<Rewards> rewards(@NonNull String filter) {
+        if (ALL.equalsIgnoreCase(filter)) return all;
+        List<Rewards> list = byCategory.get(filter);
+        return list != null ? list : Collections.<Rewards>emptyList();
+    }
+
+    /** Points of the cheapest reward for a filter, or {@link #NONE}. */
+    public int cheapest(@NonNull String filter) {
+        List<Rewards> list = rewards(filter);
+        return list.isEmpty() ? NONE : list.get(0).redeemPoints;
+    }
+
+    private void fetch() {
+        fetching = true;
+        final boolean ordered = !Boolean.FALSE.equals(orderIndexed);
+
+        Query q = FirebaseFirestore.getInstance()
+                .collection(COL_REWARDS)
+                .whereEqualTo(F_ACTIVE, true);
+        if (ordered) q = q.orderBy(F_POINTS, Query.Direction.ASCENDING);
+
+        // Default source: server when reachable, local cache when offline
+        q.get()
+                .addOnSuccessListener(snap -> {
+                    if (ordered) orderIndexed = true;
+                    onFetched(snap);
+                })
+                .addOnFailureListener(err -> {
+                    if (ordered && err instanceof FirebaseFirestoreException
+                            && ((FirebaseFirestoreException) err).getCode()
+                                == FirebaseFirestoreException.Code.FAILED_PRECONDITION) {
+                        Log.w(TAG, "Composite index missing; sorting on device for this session", err);
+                        orderIndexed = false;
+                        fetch();
+                        return;
+                    }
+                    fetching = false;
+                    List<Callback> copy = new ArrayList<>(waiting);
+                    waiting.clear();
+                    for (Callback c : copy) c.onError(err);
+                });
+    }
+
+    private void onFetched(@NonNull QuerySnapshot snap) {
+        List<Rewards> list = new ArrayList<>(snap.size());
+        for (DocumentSnapshot d : snap.getDocuments()) {
+            Rewards r = parse(d);
+            if (r != null) list.add(r);
+        }
+        boolean fromCache = snap.getMetadata().isFromCache();
+        if (!fromCache) {
+            fetchedAt = SystemClock.elapsedRealtime();
+            store.saveRewards(list);
+        }
+        fetching = false;
+        // An empty answer from Firestore's cache (offline, cache cleared) says nothing about
+        // the catalog: keep the disk snapshot already on screen rather than blank it
+        if (!(fromCache && list.isEmpty() && loaded)) publish(list);
+
+        List<Callback> copy = new ArrayList<>(waiting);
+        waiting.clear();
+        for (Callback c : copy) c.onRewards(this);
+    }
+
+    private void publish(@NonNull List<Rewards> active) {
+        List<Rewards> sorted = new ArrayList<>(active);
+        // Already in order when the ordered query ran; the sort is then a single linear pass
+        Collections.sort(sorted, (a, b) -> Integer.compare(a.redeemPoints, b.redeemPoints));
+
+        Map<String, List<Rewards>> cats = new HashMap<>();
+        for (Rewards r : sorted) {
+            if (r.category == null || r.category.isEmpty()) continue;
+            List<Rewards> l = cats.get(r.category);
+            if (l == null) cats.put(r.category, l = new ArrayList<>());
+            l.add(r);
+        }
+        Map<String, List<Rewards>> frozen = new HashMap<>();
+        for (Map.Entry<String, List<Rewards>> e : cats.entrySet()) {
+            frozen.put(e.getKey(), Collections.unmodifiableList(e.getValue()));
+        }
+
+        all = Collections.unmodifiableList(sorted);
+        byCategory = frozen;
+        loaded = true;
+    }
+
+    @Nullable
+    private static Rewards parse(@NonNull DocumentSnapshot d) {
+        Boolean active = d.getBoolean(F_ACTIVE);
+        String name = d.getString(F_NAME);
+        if (active == null || !active || name == null) return null;
+
+        Rewards r = new Rewards();
+        r.id = d.getId();
+        r.name = name;
+        r.imagePath = safeString(d.getString(F_IMAGE));
+        r.active = true;
+
+        // priceMAD can be Double or Long
+        Object price = d.get(F_PRICE);
+        if (price instanceof Double) r.priceMAD = (Double) price;
+        else if (price instanceof Long) r.priceMAD = ((Long) price).doubleValue();
+        else r.priceMAD = 0d;
+
+        // redeemPoints can be Long or Double
+        Object pts = d.get(F_POINTS);
+        if (pts instanceof Long) r.redeemPoints = ((Long) pts).intValue();
+        else if (pts instanceof Double) r.redeemPoints = ((Double) pts).intValue();
+        else r.redeemPoints = 0;
+
+        r.category = safeString(d.getString(F_CATEGORY));
+        return r;
+    }
+
+    private static String safeString(String s) { return (s == null) ? "" : s; }
+}
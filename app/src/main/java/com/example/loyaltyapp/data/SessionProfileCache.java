@@ -0,0 +1,83 @@
+package com.example.loyaltyapp.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.loyaltyapp.models.User;
+
+/**
+ * The two routing facts about the signed-in user (verified, profile complete), kept on disk
+ * so launch can route without waiting for users/{uid}. Refreshed from every
+ * {@link UserProfileRepository} snapshot once {@link #start()} has been called; callers
+ * revalidate against the live snapshot after routing from it.
+ */
+public final class SessionProfileCache {
+
+    public static final class Flags {
+        public final boolean verified;
+        public final boolean profileComplete;
+
+        Flags(boolean verified, boolean profileComplete) {
+            this.verified = verified;
+            this.profileComplete = profileComplete;
+        }
+    }
+
+    private static final String PREFS = "session_profile";
+    private static final String KEY_UID = "uid";
+    private static final String KEY_VERIFIED = "verified";
+    private static final String KEY_COMPLETE = "profileComplete";
+
+    private static SessionProfileCache instance;
+
+    public static synchronized SessionProfileCache get(@NonNull Context context) {
+        if (instance == null) instance = new SessionProfileCache(context.getApplicationContext());
+        return instance;
+    }
+
+    private final SharedPreferences prefs;
+    private boolean started;
+
+    private final UserProfileRepository.Observer writer = this::save;
+
+    private SessionProfileCache(Context app) {
+        prefs = app.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    /** Keeps the flags in step with the user document from now on. Idempotent. */
+    public void start() {
+        if (started) return;
+        started = true;
+        UserProfileRepository.get().observe(writer);
+    }
+
+    /** @return the flags saved for {@code uid}, or null when none are (another account, first launch). */
+    @Nullable
+    public Flags read(@NonNull String uid) {
+        if (!uid.equals(prefs.getString(KEY_UID, null))) return null;
+        return new Flags(prefs.getBoolean(KEY_VERIFIED, false), prefs.getBoolean(KEY_COMPLETE, false));
+    }
+
+    /** Forgets everything, e.g. on sign-out. */
+    public void clear() {
+        prefs.edit().clear().apply();
+    }
+
+    private void save(@NonNull User u) {
+        // A missing document says nothing reliable about the profile; keep what we had
+        if (!u.exists() || u.getUid() == null) return;
+        boolean verified = u.isVerified();
+        boolean complete = u.isProfileComplete();
+        Flags cur = read(u.getUid());
+        if (cur != null && cur.verified == verified && cur.profileComplete == complete) return;
+
+        prefs.edit()
+                .putString(KEY_UID, u.getUid())
+                .putBoolean(KEY_VERIFIED, verified)
+                .putBoolean(KEY_COMPLETE, complete)
+                .apply();
+    }
+}
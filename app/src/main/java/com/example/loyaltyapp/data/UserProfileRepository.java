@@ -0,0 +1,115 @@
+package com.example.loyaltyapp.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.loyaltyapp.models.User;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process-wide owner of the signed-in user's users/{uid} document.
+ * Holds a single snapshot listener and hands the latest {@link User} to every screen,
+ * so tabs no longer issue their own get() on the same document.
+ * All callbacks arrive on the main thread (Firestore's default listener executor).
+ */
+public final class UserProfileRepository {
+
+    public interface Observer {
+        void onUser(@NonNull User user);
+        default void onError(@NonNull Exception e) {}
+    }
+
+    private static UserProfileRepository instance;
+
+    public static synchronized UserProfileRepository get() {
+        if (instance == null) instance = new UserProfileRepository();
+        return instance;
+    }
+
+    private final List<Observer> observers = new CopyOnWriteArrayList<>();
+    private ListenerRegistration registration;
+    @Nullable private String uid;
+    // Volatile: PointsTransactions reads it for visit hints off the main thread
+    @Nullable private volatile User current;
+
+    private UserProfileRepository() {}
+
+    /** Last snapshot for the signed-in user, or null before the first one arrives. */
+    @Nullable
+    public User getCurrent() {
+        return current;
+    }
+
+    /** Registers a long-lived observer; it gets the cached snapshot immediately if there is one. */
+    public void observe(@NonNull Observer o) {
+        observers.add(o);
+        ensureListening();
+        if (current != null) o.onUser(current);
+    }
+
+    public void removeObserver(@NonNull Observer o) {
+        observers.remove(o);
+    }
+
+    /** Delivers exactly one snapshot (or error): the cached one if loaded, otherwise the next. */
+    public void getOnce(@NonNull Observer o) {
+        ensureListening();
+        if (current != null) {
+            o.onUser(current);
+            return;
+        }
+        observers.add(new Observer() {
+            @Override public void onUser(@NonNull User user) {
+                observers.remove(this);
+                o.onUser(user);
+            }
+
+            @Override public void onError(@NonNull Exception e) {
+                observers.remove(this);
+                o.onError(e);
+            }
+        });
+    }
+
+    /** Detaches the listener and drops the cached snapshot, e.g. on sign-out. */
+    public void stop() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+        uid = null;
+        current = null;
+    }
+
+    private void ensureListening() {
+        FirebaseUser u = FirebaseAuth.getInstance().getCurrentUser();
+        String signedIn = u != null ? u.getUid() : null;
+        if (signedIn == null) {
+            stop();
+            return;
+        }
+        if (signedIn.equals(uid) && registration != null) return;
+
+        stop();
+        uid = signedIn;
+        registration = FirebaseFirestore.getInstance()
+                .collection("users").document(signedIn)
+                .addSnapshotListener((snap, err) -> {
+                    if (err != null) {
+                        // Firestore tears the listener down after an error; re-attach on next use.
+                        registration = null;
+                        for (Observer o : observers) o.onError(err);
+                        return;
+                    }
+                    if (snap == null) return;
+                    current = User.fromDoc(snap);
+                    for (Observer o : observers) o.onUser(current);
+                });
+    }
+}
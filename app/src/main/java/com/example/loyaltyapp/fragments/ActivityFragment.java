@@ -3,13 +3,16 @@ package com.example.loyaltyapp.fragments;
 import android.app.DatePickerDialog;
 import android.os.Bundle;
 import android.text.TextUtils;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.*;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.widget.NestedScrollView;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
@@ -17,19 +20,32 @@ import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 import com.example.loyaltyapp.LoyaltyActivity;
 import com.example.loyaltyapp.R;
 import com.example.loyaltyapp.adapters.ActivityAdapter;
+import com.example.loyaltyapp.data.ActivityIndex;
+import com.example.loyaltyapp.data.UserProfileRepository;
 import com.example.loyaltyapp.models.ActivityEvent;
+import com.example.loyaltyapp.models.User;
+import com.example.loyaltyapp.models.UserStats;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
 import com.google.firebase.Timestamp;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.*;
 
+import java.text.SimpleDateFormat;
 import java.util.*;
 
-public class ActivityFragment extends Fragment {
+public class ActivityFragment extends Fragment implements LoyaltyActivity.ScrollToTop {
+
+    private static final String TAG = "ActivityFragment";
+    private static final int PAGE_SIZE = 30;
+    // Start fetching the next page when the user is this close (px) to the bottom
+    private static final int PREFETCH_DISTANCE_PX = 1200;
+    // Pages fetched on their own for a short filtered list; scrolling pages in the rest
+    private static final int MAX_AUTO_PAGES = 3;
 
     // UI
     private SwipeRefreshLayout swipeRefresh;
+    private NestedScrollView scroll;
     private RecyclerView recycler;
     private View emptyState;
     private ProgressBar loading;
@@ -41,18 +57,22 @@ public class ActivityFragment extends Fragment {
     private Chip chipAll, chipScans, chipRedemptions, chipBonuses;
     private Chip chipThisWeek, chipThisMonth, chipCustomDate;
 
-    // Data
-    private final List<ActivityEvent> allEvents = new ArrayList<>();
+    // Data: loaded events, cursors and filters live in the view model
+    private ActivityViewModel model;
     private final List<ActivityEvent> shownEvents = new ArrayList<>();
     private ActivityAdapter adapter;
-
-    // Filters
-    private String typeFilter = "all";   // all|scan|redemption|bonus
-    private Date fromDate = null, toDate = null; // inclusive ranges for custom/week/month
+    private boolean loadingOlder = false;
+    private int autoPages = 0;
 
     // Firebase
     private final FirebaseAuth auth = FirebaseAuth.getInstance();
     private final FirebaseFirestore db = FirebaseFirestore.getInstance();
+    private final UserProfileRepository.Observer headerObserver = this::bindHeader;
+    @Nullable private ListenerRegistration statsReg;
+
+    // Header state: level prefers lifetime earned from the aggregate doc once it exists
+    @Nullable private User headerUser;
+    @Nullable private UserStats stats;
 
     @Nullable
     @Override
@@ -60,6 +80,7 @@ public class ActivityFragment extends Fragment {
                              @Nullable ViewGroup container,
                              @Nullable Bundle savedInstanceState) {
         View v = inflater.inflate(R.layout.fragment_activity, container, false);
+        model = new ViewModelProvider(this).get(ActivityViewModel.class);
 
         // Header
         tvCurrentPoints = v.findViewById(R.id.tvCurrentPoints);
@@ -70,6 +91,7 @@ public class ActivityFragment extends Fragment {
 
         // List/empty/loading
         swipeRefresh = v.findViewById(R.id.swipeRefresh);
+        scroll       = v.findViewById(R.id.activityScroll);
         recycler     = v.findViewById(R.id.activityRecyclerView);
         emptyState   = v.findViewById(R.id.emptyState);
         loading      = v.findViewById(R.id.loadingIndicator);
@@ -88,27 +110,37 @@ public class ActivityFragment extends Fragment {
 
         // Recycler
         recycler.setLayoutManager(new LinearLayoutManager(requireContext()));
-        adapter = new ActivityAdapter(shownEvents);
+        adapter = new ActivityAdapter();
         recycler.setAdapter(adapter);
 
         // Pull-to-refresh
         swipeRefresh.setOnRefreshListener(this::refresh);
 
+        // The list sits inside a NestedScrollView (it is laid out in full), so paging is
+        // driven by the outer scroll position rather than the RecyclerView's own scrolling.
+        scroll.setOnScrollChangeListener((NestedScrollView.OnScrollChangeListener) (sv, x, y, oldX, oldY) -> {
+            if (y <= oldY) return;
+            View content = sv.getChildAt(0);
+            if (content != null && content.getBottom() - (sv.getHeight() + y) < PREFETCH_DISTANCE_PX) {
+                loadOlder();
+            }
+        });
+
         // Chip listeners
         chipGroupType.setOnCheckedStateChangeListener((group, ids) -> {
             if (ids.isEmpty()) return; // selectionRequired=true in XML, but just in case
             int id = ids.get(0);
-            if (id == chipAll.getId()) typeFilter = "all";
-            else if (id == chipScans.getId()) typeFilter = "scan";
-            else if (id == chipRedemptions.getId()) typeFilter = "redemption";
-            else if (id == chipBonuses.getId()) typeFilter = "bonus";
-            applyFilters();
+            if (id == chipAll.getId()) model.typeFilter = ActivityIndex.ALL;
+            else if (id == chipScans.getId()) model.typeFilter = "scan";
+            else if (id == chipRedemptions.getId()) model.typeFilter = "redemption";
+            else if (id == chipBonuses.getId()) model.typeFilter = "bonus";
+            onFiltersChanged();
         });
 
         chipGroupDate.setOnCheckedStateChangeListener((group, ids) -> {
             if (ids.isEmpty()) { // no date filter
-                fromDate = toDate = null;
-                applyFilters();
+                model.fromDate = model.toDate = null;
+                onFiltersChanged();
                 return;
             }
             int id = ids.get(0);
@@ -119,7 +151,7 @@ public class ActivityFragment extends Fragment {
             } else if (id == chipCustomDate.getId()) {
                 openCustomRangePicker();
             }
-            applyFilters();
+            onFiltersChanged();
         });
 
         // Info click: tiny toast/help
@@ -127,118 +159,260 @@ public class ActivityFragment extends Fragment {
                 Toast.makeText(requireContext(), "Earn points by scanning in-store. Redeem rewards from your points.", Toast.LENGTH_SHORT).show()
         );
 
-        // Scan now → switch to Scan tab
+        // Scan now → switch to Scan tab (camera starts opening on touch-down)
+        if (getActivity() instanceof LoyaltyActivity) {
+            ((LoyaltyActivity) getActivity()).attachScanPrewarm(btnScanNow);
+        }
         btnScanNow.setOnClickListener(vw -> {
             if (getActivity() instanceof LoyaltyActivity) {
                 ((LoyaltyActivity) getActivity()).openScanTab(); // add small helper in the activity (below)
             }
         });
 
-        // First load
-        startLoading(true);
-        loadHeaderAndList();
+        // Header counters follow the shared user snapshot (no extra read)
+        UserProfileRepository.get().observe(headerObserver);
+        listenToStats();
+
+        if (model.loaded) {
+            // Rebuilt view (e.g. after a rotation): bind what is already in memory
+            bindEvents();
+        } else {
+            startLoading(true);
+            loadHeaderAndList();
+        }
 
         return v;
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        UserProfileRepository.get().removeObserver(headerObserver);
+        if (statsReg != null) {
+            statsReg.remove();
+            statsReg = null;
+        }
+    }
+
+    @Override
+    public void scrollToTop() {
+        if (scroll != null) scroll.smoothScrollTo(0, 0);
+    }
+
     private void refresh() {
         loadHeaderAndList();
     }
 
-    /** Loads header counters + list in parallel. */
-    private void loadHeaderAndList() {
+    private void bindHeader(@NonNull User user) {
+        headerUser = user;
+        int points = user.getPoints();
+        tvCurrentPoints.setText(String.valueOf(points));
+        tvTotalVisits.setText(String.valueOf(user.getVisits()));
+        tvUserLevel.setText(levelFor(points, stats));
+    }
+
+    /** One small document instead of a scan over the activities history. */
+    private void listenToStats() {
+        String uid = auth.getCurrentUser() != null ? auth.getCurrentUser().getUid() : null;
+        if (TextUtils.isEmpty(uid)) return;
+        statsReg = db.collection("users").document(uid)
+                .collection("stats").document("aggregate")
+                .addSnapshotListener((snap, err) -> {
+                    if (err != null) {
+                        // Keep the last totals; the level still follows current points
+                        Log.w(TAG, "Stats listener failed", err);
+                        return;
+                    }
+                    if (snap == null || !isAdded()) return;
+                    stats = UserStats.fromDoc(snap);
+                    bindStats(stats);
+                });
+    }
+
+    private void bindStats(@NonNull UserStats s) {
+        if (headerUser != null) tvUserLevel.setText(levelFor(headerUser.getPoints(), s));
+        bindLastScan();
+    }
+
+    @Nullable
+    private Query activitiesQuery() {
         String uid = auth.getCurrentUser() != null ? auth.getCurrentUser().getUid() : null;
-        if (TextUtils.isEmpty(uid)) {
+        if (TextUtils.isEmpty(uid)) return null;
+        return db.collection("users").document(uid)
+                .collection("activities")
+                .orderBy("ts", Query.Direction.DESCENDING);
+    }
+
+    /**
+     * First call loads one page; later calls (pull-to-refresh) only fetch events newer
+     * than the newest one already shown. Header counters come from {@link UserProfileRepository}.
+     */
+    private void loadHeaderAndList() {
+        Query base = activitiesQuery();
+        if (base == null) {
             stopLoading();
             return;
         }
 
-        // Header counters
-        db.collection("users").document(uid)
-                .get()
-                .addOnSuccessListener(doc -> {
-                    int points = doc.contains("points") ? safeInt(doc.getLong("points")) : 0;
-                    int visits = doc.contains("visits") ? safeInt(doc.getLong("visits")) : 0;
-                    tvCurrentPoints.setText(String.valueOf(points));
-                    tvTotalVisits.setText(String.valueOf(visits));
-                    tvUserLevel.setText(levelFor(points));
-                });
+        if (model.newestDoc == null) {
+            loadFirstPage(base);
+            return;
+        }
 
-        // Activities list
-        db.collection("users").document(uid)
-                .collection("activities")
-                .orderBy("ts", Query.Direction.DESCENDING)
-                .limit(200)
+        base.endBefore(model.newestDoc)
+                .limit(PAGE_SIZE)
                 .get()
                 .addOnSuccessListener(snap -> {
-                    allEvents.clear();
-                    Timestamp lastTs = null;
-                    for (DocumentSnapshot d : snap) {
-                        ActivityEvent ev = ActivityEvent.fromDoc(d);
-                        if (ev != null) {
-                            allEvents.add(ev);
-                            if (lastTs == null) lastTs = ev.ts;
-                        }
+                    if (!isAdded()) return;
+                    if (snap.size() >= PAGE_SIZE) {
+                        // More new events than one page: the gap can't be merged, start over
+                        loadFirstPage(base);
+                        return;
                     }
-                    // Last scan text
-                    if (lastTs != null) {
-                        tvLastScan.setText(relativeTime(lastTs.toDate()));
-                    } else {
-                        tvLastScan.setText("—");
+                    if (!snap.isEmpty()) {
+                        List<ActivityEvent> fresh = parse(snap);
+                        Set<String> known = new HashSet<>();
+                        for (ActivityEvent ev : fresh) known.add(ev.id);
+                        for (ActivityEvent ev : model.allEvents) if (!known.contains(ev.id)) fresh.add(ev);
+                        model.allEvents.clear();
+                        model.allEvents.addAll(fresh);
+                        model.newestDoc = snap.getDocuments().get(0);
+                        onEventsChanged();
                     }
-
-                    applyFilters();
                     stopLoading();
                 })
-                .addOnFailureListener(e -> {
+                .addOnFailureListener(this::onLoadFailed);
+    }
+
+    private void loadFirstPage(@NonNull Query base) {
+        base.limit(PAGE_SIZE)
+                .get()
+                .addOnSuccessListener(snap -> {
+                    if (!isAdded()) return;
+                    model.allEvents.clear();
+                    model.allEvents.addAll(parse(snap));
+                    List<DocumentSnapshot> docs = snap.getDocuments();
+                    model.newestDoc = docs.isEmpty() ? null : docs.get(0);
+                    model.oldestDoc = docs.isEmpty() ? null : docs.get(docs.size() - 1);
+                    model.reachedEnd = docs.size() < PAGE_SIZE;
+                    model.loaded = true;
+                    autoPages = 0;
+                    onEventsChanged();
                     stopLoading();
-                    Toast.makeText(requireContext(), "Failed to load activity: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                });
+                })
+                .addOnFailureListener(this::onLoadFailed);
+    }
+
+    /** Appends the next page after the oldest loaded event (cursor on ts). */
+    private void loadOlder() {
+        if (loadingOlder || model.reachedEnd || model.oldestDoc == null) return;
+        Query base = activitiesQuery();
+        if (base == null) return;
+
+        loadingOlder = true;
+        base.startAfter(model.oldestDoc)
+                .limit(PAGE_SIZE)
+                .get()
+                .addOnSuccessListener(snap -> {
+                    loadingOlder = false;
+                    if (!isAdded()) return;
+                    List<DocumentSnapshot> docs = snap.getDocuments();
+                    model.reachedEnd = docs.size() < PAGE_SIZE;
+                    if (!docs.isEmpty()) {
+                        model.oldestDoc = docs.get(docs.size() - 1);
+                        model.allEvents.addAll(parse(snap));
+                        onEventsChanged();
+                    }
+                })
+                .addOnFailureListener(e -> loadingOlder = false);
+    }
+
+    private static List<ActivityEvent> parse(@NonNull QuerySnapshot snap) {
+        List<ActivityEvent> out = new ArrayList<>(snap.size());
+        SimpleDateFormat fmt = ActivityEvent.newDateFormat();
+        for (DocumentSnapshot d : snap) {
+            ActivityEvent ev = ActivityEvent.fromDoc(d, fmt);
+            if (ev != null) out.add(ev);
+        }
+        return out;
     }
 
-    /** Applies type + date filters in-memory (fast for <=200 items). */
+    private void onEventsChanged() {
+        model.index.rebuild(model.allEvents);
+        bindEvents();
+    }
+
+    private void bindEvents() {
+        bindLastScan();
+        applyFilters();
+    }
+
+    /** Last activity from the aggregate when known, else the newest loaded event. */
+    private void bindLastScan() {
+        Timestamp lastTs = stats != null ? stats.getLastActivityTs() : null;
+        if (lastTs == null && !model.allEvents.isEmpty()) lastTs = model.allEvents.get(0).ts;
+        if (lastTs != null) {
+            tvLastScan.setText(relativeTime(lastTs.toDate()));
+        } else {
+            tvLastScan.setText("—");
+        }
+    }
+
+    private void onLoadFailed(@NonNull Exception e) {
+        if (!isAdded()) return;
+        stopLoading();
+        Toast.makeText(requireContext(), "Failed to load activity: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+    }
+
+    private void onFiltersChanged() {
+        autoPages = 0;
+        applyFilters();
+    }
+
+    /** Applies type + date filters through {@link ActivityIndex}; bounds are resolved once per call. */
     private void applyFilters() {
+        long from = model.fromDate != null ? trimStart(model.fromDate).getTime() : Long.MIN_VALUE;
+        long to   = model.toDate   != null ? trimEnd(model.toDate).getTime()     : Long.MAX_VALUE;
+
         shownEvents.clear();
-        for (ActivityEvent ev : allEvents) {
-            if (!typePass(ev)) continue;
-            if (!datePass(ev)) continue;
-            shownEvents.add(ev);
-        }
-        adapter.notifyDataSetChanged();
+        model.index.query(model.typeFilter, from, to, shownEvents);
+        adapter.submitList(new ArrayList<>(shownEvents)); // diffed off the main thread
         emptyState.setVisibility(shownEvents.isEmpty() ? View.VISIBLE : View.GONE);
-    }
 
-    private boolean typePass(ActivityEvent ev) {
-        if ("all".equals(typeFilter)) return true;
-        return typeFilter.equals(ev.type);
+        // Paging follows the scroll, and a short filtered list may not scroll at all: keep
+        // fetching (each page lands back here) until it fills a page, the history ends, the
+        // loaded events reach past the start of the date range, or MAX_AUTO_PAGES were read
+        if (model.loaded && shownEvents.size() < PAGE_SIZE && !loadedPast(from)
+                && autoPages < MAX_AUTO_PAGES) {
+            autoPages++;
+            loadOlder();
+        }
     }
 
-    private boolean datePass(ActivityEvent ev) {
-        if (fromDate == null && toDate == null) return true;
-        Date t = ev.ts != null ? ev.ts.toDate() : null;
-        if (t == null) return false;
-        if (fromDate != null && t.before(trimStart(fromDate))) return false;
-        if (toDate != null && t.after(trimEnd(toDate))) return false;
-        return true;
+    /** True when the oldest loaded event is older than {@code millis}. */
+    private boolean loadedPast(long millis) {
+        if (model.allEvents.isEmpty()) return false;
+        Timestamp oldest = model.allEvents.get(model.allEvents.size() - 1).ts;
+        return oldest != null && oldest.toDate().getTime() < millis;
     }
 
     private void setThisWeekRange() {
         Calendar c = Calendar.getInstance();
         c.set(Calendar.HOUR_OF_DAY, 0); c.set(Calendar.MINUTE, 0); c.set(Calendar.SECOND, 0); c.set(Calendar.MILLISECOND, 0);
         c.set(Calendar.DAY_OF_WEEK, c.getFirstDayOfWeek());
-        fromDate = c.getTime();
+        model.fromDate = c.getTime();
         c.add(Calendar.DAY_OF_YEAR, 6);
-        toDate = c.getTime();
+        model.toDate = c.getTime();
     }
 
     private void setThisMonthRange() {
         Calendar c = Calendar.getInstance();
         c.set(Calendar.HOUR_OF_DAY, 0); c.set(Calendar.MINUTE, 0); c.set(Calendar.SECOND, 0); c.set(Calendar.MILLISECOND, 0);
         c.set(Calendar.DAY_OF_MONTH, 1);
-        fromDate = c.getTime();
+        model.fromDate = c.getTime();
         c.add(Calendar.MONTH, 1);
         c.add(Calendar.DAY_OF_MONTH, -1);
-        toDate = c.getTime();
+        model.toDate = c.getTime();
     }
 
     private void openCustomRangePicker() {
@@ -250,9 +424,9 @@ public class ActivityFragment extends Fragment {
             start.set(y, m, d, 0, 0, 0);
             DatePickerDialog dpEnd = new DatePickerDialog(requireContext(), (v2, y2, m2, d2) -> {
                 end.set(y2, m2, d2, 23, 59, 59);
-                fromDate = start.getTime();
-                toDate   = end.getTime();
-                applyFilters();
+                model.fromDate = start.getTime();
+                model.toDate   = end.getTime();
+                onFiltersChanged();
             }, end.get(Calendar.YEAR), end.get(Calendar.MONTH), end.get(Calendar.DAY_OF_MONTH));
             dpEnd.show();
         }, start.get(Calendar.YEAR), start.get(Calendar.MONTH), start.get(Calendar.DAY_OF_MONTH));
@@ -270,13 +444,14 @@ public class ActivityFragment extends Fragment {
         swipeRefresh.setRefreshing(false);
     }
 
-    private static int safeInt(Long n) {
-        return n == null ? 0 : n.intValue();
-    }
-
-    private static String levelFor(int points) {
-        if (points >= 200) return "Gold";
-        if (points >= 100) return "Silver";
+    /**
+     * Tier from lifetime earned when the aggregate exists (spending no longer demotes), never
+     * below what current points give: points earned before the counters existed are not in it.
+     */
+    private static String levelFor(int points, @Nullable UserStats stats) {
+        long basis = stats != null && stats.exists() ? Math.max(points, stats.getLifetimeEarned()) : points;
+        if (basis >= 200) return "Gold";
+        if (basis >= 100) return "Silver";
         return "Bronze";
     }
 
@@ -0,0 +1,33 @@
+package com.example.loyaltyapp.fragments;
+
+import androidx.annotation.Nullable;
+import androidx.lifecycle.ViewModel;
+
+import com.example.loyaltyapp.data.ActivityIndex;
+import com.example.loyaltyapp.models.ActivityEvent;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * What {@link ActivityFragment} has loaded and how it is filtered. Outlives the fragment's
+ * views and configuration changes, so a rebuilt tab binds from memory instead of fetching
+ * its first page again.
+ */
+public final class ActivityViewModel extends ViewModel {
+
+    final List<ActivityEvent> allEvents = new ArrayList<>();
+    final ActivityIndex index = new ActivityIndex();
+
+    // Paging cursors over users/{uid}/activities ordered by ts DESC
+    @Nullable DocumentSnapshot newestDoc, oldestDoc;
+    boolean reachedEnd = false;
+    /** True once the first page arrived; from then on only pull-to-refresh hits Firestore. */
+    boolean loaded = false;
+
+    // Filters
+    String typeFilter = ActivityIndex.ALL;   // all|scan|redemption|bonus
+    @Nullable Date fromDate, toDate;          // inclusive ranges for custom/week/month
+}
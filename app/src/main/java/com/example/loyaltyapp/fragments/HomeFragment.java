@@ -11,6 +11,7 @@ import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.widget.NestedScrollView;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -18,31 +19,30 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.signature.ObjectKey;
+import com.example.loyaltyapp.LoyaltyActivity;
 import com.example.loyaltyapp.R;
+import com.example.loyaltyapp.data.CatalogSnapshotStore;
+import com.example.loyaltyapp.data.MenuCatalog;
 import com.example.loyaltyapp.models.MenuItemModel;
 import com.example.loyaltyapp.ui.MenuAdapter;
 import com.google.android.material.chip.Chip;
 import com.google.firebase.Timestamp;
-import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.google.firebase.firestore.ListenerRegistration;
-import com.google.firebase.firestore.Query;
-import com.google.firebase.firestore.QuerySnapshot;
 
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
 import java.util.Map;
 
-public class HomeFragment extends Fragment {
+public class HomeFragment extends Fragment implements LoyaltyActivity.ScrollToTop {
 
     private static final String TAG = "HomeFragment";
 
     // Menu UI
+    private NestedScrollView scroll;
     private RecyclerView menuRv;
     private Chip chipAll, chipCoffee, chipTea, chipPastries, chipBreakfast, chipLunch;
 
@@ -55,12 +55,18 @@ public class HomeFragment extends Fragment {
     // Data
     private FirebaseFirestore db;
     private MenuAdapter adapter;
-    private ListenerRegistration currentReg;      // menu query listener
+    private final MenuCatalog.Observer catalogObserver = c -> showSelection();
     private ListenerRegistration bannerListener;  // banner config listener
+    private boolean bannerFromNetwork = false;
     @Nullable private String selectedCategory = null;
 
     public HomeFragment() {}
 
+    @Override
+    public void scrollToTop() {
+        if (scroll != null) scroll.smoothScrollTo(0, 0);
+    }
+
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
@@ -72,6 +78,7 @@ public class HomeFragment extends Fragment {
         super.onViewCreated(v, savedInstanceState);
 
         // ---- Bind menu views
+        scroll        = v.findViewById(R.id.homeScroll);
         menuRv        = v.findViewById(R.id.menuRecyclerView);
         chipAll       = v.findViewById(R.id.chipAll);
         chipCoffee    = v.findViewById(R.id.chipCoffee);
@@ -100,11 +107,11 @@ public class HomeFragment extends Fragment {
         // ---- Firestore
         db = FirebaseFirestore.getInstance();
 
-        // Load popular on first render
-        loadPopular();
+        // Menu comes from the shared catalog; chips only filter it locally
+        MenuCatalog.get(requireContext()).observe(catalogObserver);
 
         // ---- Category filters
-        chipAll.setOnClickListener(new View.OnClickListener() { @Override public void onClick(View vw) { selectedCategory = null; loadPopular(); }});
+        chipAll.setOnClickListener(new View.OnClickListener() { @Override public void onClick(View vw) { selectedCategory = null; showSelection(); }});
         chipCoffee.setOnClickListener(new View.OnClickListener() { @Override public void onClick(View vw) { applyCategory("Coffee"); }});
         chipTea.setOnClickListener(new View.OnClickListener() { @Override public void onClick(View vw) { applyCategory("Tea"); }});
         chipPastries.setOnClickListener(new View.OnClickListener() { @Override public void onClick(View vw) { applyCategory("Pastries"); }});
@@ -122,14 +129,29 @@ public class HomeFragment extends Fragment {
             bannerListener.remove();
             bannerListener = null;
         }
+
+        // Render the last saved banner right away; the listener below revalidates it
+        final CatalogSnapshotStore store = CatalogSnapshotStore.get(requireContext());
+        bannerFromNetwork = false;
+        store.load(snapshot -> {
+            if (!isAdded() || bannerFromNetwork || snapshot.banner == null) return;
+            bindBanner(snapshot.banner);
+        });
+
         bannerListener = db.collection("config").document("home_banner")
                 .addSnapshotListener((snapshot, e) -> {
                     if (!isAdded()) return;
+                    // An empty answer from Firestore's local cache says nothing; keep the saved banner
+                    if (e == null && snapshot != null && !snapshot.exists()
+                            && snapshot.getMetadata().isFromCache()) return;
+                    bannerFromNetwork = true;
                     if (e != null || snapshot == null || !snapshot.exists()) {
                         if (bannerCard != null) bannerCard.setVisibility(View.GONE);
+                        if (snapshot != null) store.saveBanner(null);
                         return;
                     }
                     bindBanner(snapshot.getData());
+                    store.saveBanner(snapshot.getData());
                 });
     }
 
@@ -215,52 +237,13 @@ public class HomeFragment extends Fragment {
 
     private void applyCategory(@NonNull String category) {
         selectedCategory = category;
-        loadByCategory(category);
-    }
-
-    private void loadPopular() {
-        attachQuery(
-                db.collection("menu_items")
-                        .whereEqualTo("isAvailable", true)
-                        .whereEqualTo("isPopular", true)
-                        .limit(12)
-        );
+        showSelection();
     }
 
-    private void loadByCategory(@NonNull String category) {
-        attachQuery(
-                db.collection("menu_items")
-                        .whereEqualTo("isAvailable", true)
-                        .whereEqualTo("category", category)
-                        .orderBy("name")
-                        .limit(24)
-        );
-    }
-
-    /** Attaches a snapshot listener to the given query, replacing any previous one. */
-    private void attachQuery(@NonNull Query query) {
-        if (currentReg != null) {
-            currentReg.remove();
-            currentReg = null;
-        }
-        currentReg = query.addSnapshotListener((QuerySnapshot snap, FirebaseFirestoreException err) -> {
-            if (!isAdded()) return;
-            if (err != null) {
-                Log.e(TAG, "Query failed", err);
-                return;
-            }
-            List<MenuItemModel> items = new ArrayList<MenuItemModel>();
-            if (snap != null) {
-                for (DocumentSnapshot d : snap.getDocuments()) {
-                    MenuItemModel m = d.toObject(MenuItemModel.class);
-                    if (m != null) {
-                        m.setId(d.getId());
-                        items.add(m);
-                    }
-                }
-            }
-            adapter.submit(items);
-        });
+    /** Popular items when no chip is selected, otherwise the selected category. No Firestore read. */
+    private void showSelection() {
+        MenuCatalog catalog = MenuCatalog.get(requireContext());
+        adapter.submit(selectedCategory == null ? catalog.popular() : catalog.category(selectedCategory));
     }
 
     // ================================ Helpers ======================================
@@ -292,10 +275,7 @@ public class HomeFragment extends Fragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        if (currentReg != null) {
-            currentReg.remove();
-            currentReg = null;
-        }
+        MenuCatalog.get(requireContext()).removeObserver(catalogObserver);
         if (bannerListener != null) {
             bannerListener.remove();
             bannerListener = null;
@@ -20,6 +20,9 @@ import androidx.fragment.app.Fragment;
 
 import com.example.loyaltyapp.R;
 import com.example.loyaltyapp.SignUpActivity;
+import com.example.loyaltyapp.data.SessionProfileCache;
+import com.example.loyaltyapp.data.UserProfileRepository;
+import com.example.loyaltyapp.models.User;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.card.MaterialCardView;
@@ -27,11 +30,8 @@ import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.DocumentReference;
-import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.SetOptions;
 
 import java.util.Calendar;
@@ -59,7 +59,7 @@ public class ProfileFragment extends Fragment {
     private FirebaseAuth auth;
     private FirebaseFirestore db;
     private String uid;
-    private ListenerRegistration userListener;
+    private UserProfileRepository.Observer userObserver;
 
     @Nullable @Override
     public View onCreateView(@NonNull LayoutInflater inflater,
@@ -121,16 +121,19 @@ public class ProfileFragment extends Fragment {
         inputBirthday.setOnClickListener(x -> showDatePicker());
         btnSave.setOnClickListener(x -> saveProfile());
 
-        // Écoute temps réel du document utilisateur (affichage only)
-        DocumentReference userRef = db.collection("users").document(uid);
-        userListener = userRef.addSnapshotListener((snapshot, e) -> {
-            if (!isAdded()) return;
-            if (e != null) {
+        // Écoute temps réel du document utilisateur (listener partagé, affichage only)
+        userObserver = new UserProfileRepository.Observer() {
+            @Override public void onUser(@NonNull User snapshot) {
+                if (!isAdded()) return;
+                if (snapshot.exists()) bindUser(snapshot);
+            }
+
+            @Override public void onError(@NonNull Exception e) {
+                if (!isAdded()) return;
                 Toast.makeText(requireContext(), "Failed to load profile.", Toast.LENGTH_SHORT).show();
-                return;
             }
-            if (snapshot != null && snapshot.exists()) bindUser(snapshot);
-        });
+        };
+        UserProfileRepository.get().observe(userObserver);
 
         // Sign out
         logoutLayout.setOnClickListener(v1 -> {
@@ -153,14 +156,14 @@ public class ProfileFragment extends Fragment {
                 .setAction("OK", v -> {}) // optional action
                 .show();
     }
-    private void bindUser(@NonNull DocumentSnapshot doc) {
-        String fullName = doc.getString("fullName");
-        String birthday = doc.getString("birthday");
-        String gender   = doc.getString("gender");
-        Long points     = doc.getLong("points");
-        Boolean verified = doc.getBoolean("isVerified");
-        String phone = doc.getString("phone");  // Add this
-        String address = doc.getString("address");  // Add this
+    private void bindUser(@NonNull User doc) {
+        String fullName = doc.getFullName();
+        String birthday = doc.getBirthday();
+        String gender   = doc.getGender();
+        int points      = doc.getPoints();
+        boolean isVerified = doc.isVerified();
+        String phone = doc.getPhone();
+        String address = doc.getAddress();
 
         tvName.setText(!TextUtils.isEmpty(fullName) ? fullName : getString(R.string.profile_name_placeholder));
         tvBirthday.setText(!TextUtils.isEmpty(birthday)
@@ -169,7 +172,7 @@ public class ProfileFragment extends Fragment {
         tvGender.setText(!TextUtils.isEmpty(gender)
                 ? getString(R.string.profile_gender_value, gender)
                 : getString(R.string.profile_gender_placeholder));
-        tvPoints.setText(points != null ? String.valueOf(points) : "0");
+        tvPoints.setText(String.valueOf(points));
 
         // Add phone and address display
         tvPhone.setText(!TextUtils.isEmpty(phone)
@@ -179,7 +182,6 @@ public class ProfileFragment extends Fragment {
                 ? address
                 : getString(R.string.profile_address_placeholder));
 
-        boolean isVerified = verified != null ? verified : false;
         editCard.setVisibility(isVerified ? View.GONE : View.VISIBLE);
         if (!isVerified) {
             if (inputFullName != null) inputFullName.setText(fullName != null ? fullName : "");
@@ -271,6 +273,8 @@ public class ProfileFragment extends Fragment {
     }
 
     private void logOut() {
+        UserProfileRepository.get().stop();
+        SessionProfileCache.get(requireContext()).clear();
         FirebaseAuth.getInstance().signOut();
         startActivity(new Intent(requireContext(), SignUpActivity.class));
         requireActivity().finish();
@@ -279,9 +283,9 @@ public class ProfileFragment extends Fragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        if (userListener != null) {
-            userListener.remove();
-            userListener = null;
+        if (userObserver != null) {
+            UserProfileRepository.get().removeObserver(userObserver);
+            userObserver = null;
         }
     }
 }
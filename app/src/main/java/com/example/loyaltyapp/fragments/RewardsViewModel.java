@@ -0,0 +1,17 @@
+package com.example.loyaltyapp.fragments;
+
+import androidx.lifecycle.ViewModel;
+
+import com.example.loyaltyapp.data.RewardsCatalog;
+
+/**
+ * {@link RewarsdFragment} state that outlives its views and configuration changes. The
+ * rewards themselves live in the process-wide {@link RewardsCatalog}.
+ */
+public final class RewardsViewModel extends ViewModel {
+
+    int userPoints = 0;
+    String activeFilter = RewardsCatalog.ALL; // all|Food|Drinks|Exclusive (match your data case)
+    /** True once points and rewards were bound; a rebuilt view then binds without a query. */
+    boolean loaded = false;
+}
@@ -29,33 +29,48 @@ import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 
 // Firebase Imports
+import com.example.loyaltyapp.BuildConfig;
 import com.example.loyaltyapp.R;
-import com.google.firebase.Timestamp;
+import com.example.loyaltyapp.ledger.BatchResult;
+import com.example.loyaltyapp.ledger.EarnResult;
+import com.example.loyaltyapp.ledger.LedgerOp;
+import com.example.loyaltyapp.ledger.LoyaltyTransactionService;
+import com.example.loyaltyapp.metrics.ScanMetrics;
+import com.example.loyaltyapp.metrics.ScanTrace;
+import com.example.loyaltyapp.scan.EarnCode;
+import com.example.loyaltyapp.scan.RecentScanCache;
+import com.example.loyaltyapp.scan.ScanPayload;
+import com.example.loyaltyapp.scan.ScanPayloadParser;
+import com.example.loyaltyapp.scan.QrDecoderFactory;
+import com.example.loyaltyapp.scan.ScanDecodeConfig;
+import com.example.loyaltyapp.services.PointsTransactions;
+import com.example.loyaltyapp.services.ScanQueue;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.DocumentReference;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.FieldValue;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.FirebaseFirestoreException;
 
 // ZXing (Barcode) Imports
 import com.journeyapps.barcodescanner.BarcodeCallback;
 import com.journeyapps.barcodescanner.BarcodeResult;
+import com.journeyapps.barcodescanner.BarcodeView;
+import com.journeyapps.barcodescanner.CameraPreview;
 import com.journeyapps.barcodescanner.DecoratedBarcodeView;
 
-// Java Imports
-import java.util.Date;
-import java.util.HashMap;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class ScanFragment extends Fragment {
 
     private static final String TAG = "ScanFragment";
-    private static final long DEBOUNCE_MS = 1500;
     private static final long OVERLAY_MS = 2000;
-    // 4 Hours in Milliseconds
-    private static final long VISIT_TIME_WINDOW_MILLIS = 4 * 60 * 60 * 1000;
+    /** How long a camera opened ahead of time stays open if the tab is not shown after all. */
+    private static final long PREWARM_TTL_MS = 3000;
+    /** Short pause between receipts in batch mode; the same code twice is caught by the set anyway. */
+    private static final long BATCH_COOLDOWN_MS = 600;
+    /** One transaction per batch. */
+    private static final int MAX_BATCH = LoyaltyTransactionService.MAX_OPS_PER_TRANSACTION;
 
     // UI VIEWS
     private DecoratedBarcodeView barcodeView;
@@ -64,16 +79,35 @@ public class ScanFragment extends Fragment {
     private TextView successMessage, successDetails, errorMessage;
     private Button btnRetry;
     private View btnManualEntry;
+    private View btnBatchMode, batchBar;
+    private TextView batchCount, batchModeLabel;
+    private Button btnBatchDone;
 
     // STATE
     private final Handler uiHandler = new Handler(Looper.getMainLooper());
     private boolean isProcessingScan = false;
-    private long lastScanTimestamp = 0L;
+    private final ScanDecodeConfig decodeConfig = ScanDecodeConfig.DEFAULT;
+    private final QrDecoderFactory decoderFactory = new QrDecoderFactory(decodeConfig);
+    private final ScanTrace trace = new ScanTrace(ScanMetrics.get());
+    @Nullable private PublicKey earnCodeKey;
+    // Refilled for every scan; only touched on the main thread
+    private final ScanPayload payload = new ScanPayload();
+    private final RecentScanCache recentScans = RecentScanCache.get();
     private boolean isTorchOn = false;
+    // Batch mode: voucher id -> scan time, in scan order, each code once
+    private boolean batchMode = false;
+    private final Map<String, Long> batchCodes = new LinkedHashMap<>();
+    private final Runnable overlayTimeout = () -> {
+        hideSuccess();
+        resetScanState();
+        resumeScanner();
+    };
+    private final Runnable prewarmTimeout = () -> {
+        if (isHidden()) pauseScanner();
+    };
 
     // FIREBASE
     private final FirebaseAuth auth = FirebaseAuth.getInstance();
-    private final FirebaseFirestore db = FirebaseFirestore.getInstance();
     private ActivityResultLauncher<String> cameraPermissionLauncher;
 
     // --- SCANNER CALLBACK ---
@@ -82,17 +116,15 @@ public class ScanFragment extends Fragment {
         public void barcodeResult(BarcodeResult result) {
             if (result == null || result.getText() == null) return;
 
-            long now = System.currentTimeMillis();
-            if (isProcessingScan || (now - lastScanTimestamp) < DEBOUNCE_MS) {
-                return;
-            }
+            if (isProcessingScan) return;
 
+            // No decoding at all while this code is handled; resetScanState() resumes it
             isProcessingScan = true;
-            lastScanTimestamp = now;
+            decoderFactory.suspend();
+            trace.codeFound();
 
-            final String scannedContent = result.getText().trim();
             triggerHapticFeedback(60);
-            processScannedCode(scannedContent);
+            processScannedCode(result.getText());
         }
     };
 
@@ -103,22 +135,66 @@ public class ScanFragment extends Fragment {
         initializeViews(view);
         setupClickListeners();
         setupPermissionLauncher();
-        checkPermissionAndStart();
+        earnCodeKey = EarnCode.publicKey(BuildConfig.EARN_CODE_PUBLIC_KEY);
+        // Created hidden when pre-warmed: no permission prompt until the tab is really shown
+        if (isHidden()) decoderFactory.suspend();
+        else checkPermissionAndStart();
         return view;
     }
 
     @Override
     public void onResume() {
         super.onResume();
-        if (hasCameraPermission()) resumeScanner();
+        if (hasCameraPermission() && !isHidden()) resumeScanner();
     }
 
     @Override
     public void onPause() {
         super.onPause();
+        stopScanning();
+        ScanMetrics.get().dumpIfEnabled(requireContext());
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        // A hidden tab is capped at STARTED and never paused: close a pre-warmed camera here
+        stopScanning();
+    }
+
+    @Override
+    public void onHiddenChanged(boolean hidden) {
+        super.onHiddenChanged(hidden);
+        if (hidden) {
+            stopScanning();
+            decoderFactory.suspend();
+        } else {
+            uiHandler.removeCallbacks(prewarmTimeout);
+            decoderFactory.resume(0);
+            checkPermissionAndStart();
+        }
+    }
+
+    /**
+     * Opens the camera while the tab is still hidden, with decoding suspended, so the preview
+     * is already running when the tab is shown. Closed again after {@link #PREWARM_TTL_MS}
+     * if that does not happen. Never asks for the permission.
+     */
+    public void prewarmCamera() {
+        if (!isAdded() || !isHidden() || barcodeView == null || !hasCameraPermission()) return;
+        decoderFactory.suspend();
+        resumeScanner();
+        uiHandler.removeCallbacks(prewarmTimeout);
+        uiHandler.postDelayed(prewarmTimeout, PREWARM_TTL_MS);
+    }
+
+    private void stopScanning() {
+        uiHandler.removeCallbacks(overlayTimeout);
+        uiHandler.removeCallbacks(prewarmTimeout);
         pauseScanner();
         hideOverlays();
         isProcessingScan = false;
+        decoderFactory.resume(0);
     }
 
     // ============================================================================================
@@ -136,12 +212,29 @@ public class ScanFragment extends Fragment {
         errorMessage   = v.findViewById(R.id.errorMessage);
         btnRetry       = v.findViewById(R.id.btnRetry);
         btnManualEntry = v.findViewById(R.id.btnManualEntry);
+        btnBatchMode   = v.findViewById(R.id.btnBatchMode);
+        batchModeLabel = v.findViewById(R.id.batchModeLabel);
+        batchBar       = v.findViewById(R.id.batchBar);
+        batchCount     = v.findViewById(R.id.batchCount);
+        btnBatchDone   = v.findViewById(R.id.btnBatchDone);
 
         if (btnManualEntry != null) {
             btnManualEntry.setOnClickListener(view ->
                     showError("Manual entry is not implemented yet"));
         }
 
+        // Decode only the centre square, QR only, paced by the decoder itself
+        BarcodeView preview = barcodeView.getBarcodeView();
+        preview.setMarginFraction(decodeConfig.roiMarginFraction);
+        preview.setDecoderFactory(decoderFactory);
+        decoderFactory.setFrameListener((decodeNanos, found) -> trace.frameDecoded(decodeNanos));
+        preview.addStateListener(new CameraPreview.StateListener() {
+            @Override public void previewSized() {}
+            @Override public void previewStarted() { trace.previewStarted(); }
+            @Override public void previewStopped() {}
+            @Override public void cameraError(Exception error) {}
+            @Override public void cameraClosed() {}
+        });
         barcodeView.decodeContinuous(scanCallback);
     }
 
@@ -153,6 +246,9 @@ public class ScanFragment extends Fragment {
             resetScanState();
             resumeScanner();
         });
+        btnBatchMode.setOnClickListener(v -> setBatchMode(!batchMode));
+        btnBatchDone.setOnClickListener(v -> commitBatch());
+        bindBatchBar();
     }
 
     // ============================================================================================
@@ -160,158 +256,106 @@ public class ScanFragment extends Fragment {
     // ============================================================================================
 
     private void processScannedCode(@NonNull String rawData) {
-        if (rawData.isEmpty()) {
-            showError("Invalid QR Code");
-            return;
-        }
-
-        // REDEEM flow from cashier app:
-        // Format: REDEEM|codeId|userUid|costPoints
-        if (rawData.startsWith("REDEEM|")) {
-            String[] parts = rawData.split("\\|");
-            if (parts.length < 4) {
-                showError("Invalid redemption QR format");
+        ScanPayloadParser.parse(rawData, payload);
+        switch (payload.type()) {
+            case REDEEM:
+                // REDEEM flow from cashier app: REDEEM|codeId|userUid|costPoints
+                executeSpendTransaction(payload.text(ScanPayload.REDEEM_CODE_ID),
+                        payload.text(ScanPayload.REDEEM_USER_UID),
+                        (int) payload.number(ScanPayload.REDEEM_COST));
                 return;
-            }
 
-            String codeId     = parts[1];
-            String qrUserUid  = parts[2];
-            String costString = parts[3];
+            case SIGNED_EARN:
+                // Signed compact code: forged or expired ones are refused here, without a transaction
+                try {
+                    EarnCode code = EarnCode.decode(payload.text(0), earnCodeKey, System.currentTimeMillis());
+                    onEarnCode(code.id, code.points);
+                } catch (EarnCode.Rejected e) {
+                    if (e.reason != EarnCode.Rejected.Reason.NO_KEY) {
+                        showError(e.getMessage());
+                        return;
+                    }
+                    // No key in this build: no local verdict, the transaction checks the voucher
+                    String id = EarnCode.idOf(payload.text(0));
+                    if (id != null) onEarnCode(id, 0);
+                    else showError("Invalid QR Code");
+                }
+                return;
 
-            int qrCostPoints;
-            try {
-                qrCostPoints = Integer.parseInt(costString);
-            } catch (NumberFormatException e) {
-                showError("Invalid points in QR code");
+            case EARN_ID:
+                // Default: EARN Logic (Add Points); the text is the document ID for /earn_codes/{id}
+                onEarnCode(payload.text(0), 0);
                 return;
-            }
 
-            executeSpendTransaction(codeId, qrUserUid, qrCostPoints);
-            return;
+            case INVALID:
+            default:
+                showError(payload.error());
         }
+    }
 
-        // Default: EARN Logic (Add Points)
-        // rawData is just the document ID for /earn_codes/{id}
-        executeEarnTransaction(rawData);
+    /** @param signedPoints points vouched for by a verified signed code, 0 when unknown */
+    private void onEarnCode(@NonNull String voucherId, int signedPoints) {
+        if (batchMode) addToBatch(voucherId);
+        else executeEarnTransaction(voucherId, signedPoints);
     }
 
     // ============================================================================================
     // LOGIC A: EARNING POINTS (Standard Receipt Scan)
     // ============================================================================================
 
-    private void executeEarnTransaction(@NonNull String voucherId) {
+    private void executeEarnTransaction(@NonNull String voucherId, final int signedPoints) {
         FirebaseUser currentUser = auth.getCurrentUser();
         if (currentUser == null) {
             showError("Authentication required");
             return;
         }
 
-        final DocumentReference voucherRef  = db.collection("earn_codes").document(voucherId);
-        final DocumentReference userRef     = db.collection("users").document(currentUser.getUid());
-        final DocumentReference activityRef = userRef.collection("activities").document();
-
-        db.runTransaction(transaction -> {
-            DocumentSnapshot voucherSnap = transaction.get(voucherRef);
-            DocumentSnapshot userSnap    = transaction.get(userRef);
-
-            if (!voucherSnap.exists()) {
-                throw new FirebaseFirestoreException("Voucher not found", FirebaseFirestoreException.Code.NOT_FOUND);
-            }
-
-            String status      = voucherSnap.getString("status");
-            Long validForSec   = voucherSnap.getLong("validForSec");
-            Timestamp createdAt= voucherSnap.getTimestamp("createdAt");
-            Long pointsLong    = voucherSnap.getLong("points");
-            int pointsVal      = pointsLong != null ? pointsLong.intValue() : 0;
-
-            if (status == null) {
-                throw new FirebaseFirestoreException("Invalid voucher", FirebaseFirestoreException.Code.DATA_LOSS);
-            }
-
-            // Only allow "pending"
-            if (!"pending".equalsIgnoreCase(status)) {
-                throw new FirebaseFirestoreException("Voucher is " + status, FirebaseFirestoreException.Code.ABORTED);
-            }
-
-            if (createdAt != null && validForSec != null) {
-                long ageMs = System.currentTimeMillis() - createdAt.toDate().getTime();
-                if (ageMs > validForSec * 1000L) {
-                    throw new FirebaseFirestoreException("Voucher expired", FirebaseFirestoreException.Code.ABORTED);
-                }
-            }
-
-            long currentPoints = userSnap.getLong("points") != null ? userSnap.getLong("points") : 0L;
-
-            // --- NEW VISIT LOGIC ---
-            long currentVisits = userSnap.getLong("visits") != null ? userSnap.getLong("visits") : 0L;
-            Timestamp lastVisitTs = userSnap.getTimestamp("lastVisitTimestamp");
-
-            boolean incrementVisit = false;
-            Date now = new Date();
-            long nowMillis = now.getTime();
+        // Rescan of a code handled a moment ago: answer from memory, no transaction
+        final String cacheKey = RecentScanCache.key(currentUser.getUid(), ScanPayload.Type.EARN_ID, voucherId);
+        if (replayRecent(cacheKey)) return;
+
+        // Persist first and answer immediately; the transaction reconciles in the background.
+        trace.txRequested();
+        recentScans.put(cacheKey, RecentScanCache.Outcome.PENDING, "Adding your points", System.currentTimeMillis());
+        boolean accepted = ScanQueue.get(requireContext()).submit(currentUser.getUid(), voucherId,
+                new ScanQueue.Callback() {
+                    @Override public void onSynced(@NonNull EarnResult result) {
+                        trace.txCommitted();
+                        if (signedPoints > 0 && signedPoints != result.points) {
+                            // The voucher document wins; a mismatch points at the till
+                            Log.w(TAG, "Signed code for " + voucherId + " says " + signedPoints
+                                    + " points, voucher gave " + result.points);
+                        }
+                        String subMsg = result.visitCounted ? "Visit counted & points added!" : "Points added (Same Visit)";
+                        recentScans.put(cacheKey, RecentScanCache.Outcome.SUCCESS,
+                                "+" + result.points + " Points", System.currentTimeMillis());
+                        updateSuccess("+" + result.points + " Points", subMsg);
+                        markResultShown();
+                    }
+
+                    @Override public void onRejected(@NonNull Exception e) {
+                        trace.txAbandoned();
+                        String msg = earnErrorMessage(e);
+                        rememberRefusal(cacheKey, e, msg);
+                        showError(msg);
+                    }
+
+                    @Override public void onDeferred() {
+                        trace.txDeferred();
+                        updateSuccess("Scan saved", "Points will be added when you're back online");
+                    }
+                });
 
-            if (lastVisitTs == null) {
-                // First visit ever
-                incrementVisit = true;
-            } else {
-                long lastVisitMillis = lastVisitTs.toDate().getTime();
-                long timeDifference = nowMillis - lastVisitMillis;
-
-                // Check 4-Hour Rule
-                if (timeDifference > VISIT_TIME_WINDOW_MILLIS) {
-                    incrementVisit = true;
-                } else {
-                    incrementVisit = false;
-                }
-            }
-            // -----------------------
-
-            // 1. Mark Voucher as redeemed
-            Map<String, Object> vUpd = new HashMap<>();
-            vUpd.put("status", "redeemed");
-            vUpd.put("redeemedAt", new Timestamp(now));
-            vUpd.put("redeemedByUid", currentUser.getUid());
-            transaction.update(voucherRef, vUpd);
-
-            // 2. Add Points to User + Visits Logic
-            Map<String, Object> uUpd = new HashMap<>();
-            uUpd.put("points", currentPoints + pointsVal);
-            uUpd.put("updatedAt", new Timestamp(now));
-
-            if (incrementVisit) {
-                uUpd.put("visits", currentVisits + 1);
-                uUpd.put("lastVisitTimestamp", new Timestamp(now));
-            }
+        if (!accepted) showSuccess("Pending…", "This code is already waiting to sync");
+        else if (signedPoints > 0) showSuccess("Pending…", "Adding " + signedPoints + " points");
+        else showSuccess("Pending…", "Adding your points");
+    }
 
-            transaction.update(userRef, uUpd);
-
-            // 3. Log Activity
-            Map<String, Object> log = new HashMap<>();
-            log.put("type", "earn");
-            log.put("points", pointsVal);
-            log.put("voucherId", voucherId);
-            log.put("ts", new Timestamp(now));
-            transaction.set(activityRef, log);
-
-            // Return Data for UI
-            Map<String, Object> result = new HashMap<>();
-            result.put("points", pointsVal);
-            result.put("visitCounted", incrementVisit);
-            return result;
-
-        }).addOnSuccessListener(result -> {
-            // Unpack result
-            int points = (int) result.get("points");
-            boolean visitCounted = (boolean) result.get("visitCounted");
-
-            String subMsg = visitCounted ? "Visit counted & points added!" : "Points added (Same Visit)";
-            showSuccess("+" + points + " Points", subMsg);
-        }).addOnFailureListener(e -> {
-            String msg = e.getMessage() != null ? e.getMessage() : "Transaction failed";
-            if (msg.contains("not found")) msg = "Invalid QR Code";
-            if (msg.toLowerCase().contains("expired")) msg = "This code has expired";
-            showError(msg);
-        });
+    private static String earnErrorMessage(@NonNull Exception e) {
+        String msg = e.getMessage() != null ? e.getMessage() : "Transaction failed";
+        if (msg.contains("not found")) msg = "Invalid QR Code";
+        if (msg.toLowerCase().contains("expired")) msg = "This code has expired";
+        return msg;
     }
 
     // ============================================================================================
@@ -334,88 +378,183 @@ public class ScanFragment extends Fragment {
             return;
         }
 
-        final DocumentReference redeemRef  = db.collection("redeem_codes").document(redeemDocId);
-        final DocumentReference userRef    = db.collection("users").document(currentUser.getUid());
-        final DocumentReference activityRef= userRef.collection("activities").document();
+        final String cacheKey = RecentScanCache.key(currentUser.getUid(), ScanPayload.Type.REDEEM, redeemDocId);
+        if (replayRecent(cacheKey)) return;
+
+        trace.txRequested();
+        recentScans.put(cacheKey, RecentScanCache.Outcome.PENDING, "Redeeming", System.currentTimeMillis());
+        PointsTransactions.spend(currentUser.getUid(), redeemDocId, qrCostPoints)
+                .addOnSuccessListener(result -> {
+                    trace.txCommitted();
+                    recentScans.put(cacheKey, RecentScanCache.Outcome.SUCCESS,
+                            "Redeemed: " + result.itemName, System.currentTimeMillis());
+                    showSuccess("Confirmed!", "Redeemed: " + result.itemName);
+                    markResultShown();
+                }).addOnFailureListener(e -> {
+                    trace.txAbandoned();
+                    String msg = e.getMessage() != null ? e.getMessage() : "Redemption failed";
+                    if (msg.toLowerCase().contains("not found")) msg = "Invalid redeem code";
+                    rememberRefusal(cacheKey, e, msg);
+                    showError(msg);
+                });
+    }
+
+    // ============================================================================================
+    // LOGIC C: BATCH EARNING (stacked receipts) -- one transaction for all codes
+    // ============================================================================================
 
-        db.runTransaction(transaction -> {
-            DocumentSnapshot redeemSnap = transaction.get(redeemRef);
-            DocumentSnapshot userSnap   = transaction.get(userRef);
+    private void setBatchMode(boolean on) {
+        if (!on && !batchCodes.isEmpty()) showToast("Batch cancelled");
+        batchMode = on;
+        batchCodes.clear();
+        bindBatchBar();
+    }
 
-            if (!redeemSnap.exists()) {
-                throw new FirebaseFirestoreException("Redemption code not found",
-                        FirebaseFirestoreException.Code.NOT_FOUND);
-            }
+    private void bindBatchBar() {
+        if (batchBar == null) return;
+        batchBar.setVisibility(batchMode ? View.VISIBLE : View.GONE);
+        batchModeLabel.setText(batchMode ? "Cancel batch" : "Several receipts");
+        int n = batchCodes.size();
+        batchCount.setText(n == 1 ? "1 receipt" : n + " receipts");
+        btnBatchDone.setEnabled(n > 0);
+    }
 
-            // Ownership: this doc must target this user
-            String targetUid = redeemSnap.getString("userUid");
-            if (targetUid != null && !targetUid.equals(currentUser.getUid())) {
-                throw new FirebaseFirestoreException("Code belongs to another user",
-                        FirebaseFirestoreException.Code.PERMISSION_DENIED);
-            }
+    /** Collects a code without any network call and goes straight back to scanning. */
+    private void addToBatch(@NonNull String voucherId) {
+        FirebaseUser currentUser = auth.getCurrentUser();
+        if (currentUser == null) {
+            showError("Authentication required");
+            return;
+        }
 
-            String status   = redeemSnap.getString("status");
-            String type     = redeemSnap.getString("type");
-            Long costLong   = redeemSnap.getLong("costPoints");
-            String itemName = redeemSnap.getString("itemName");
-            int costPoints  = costLong != null ? costLong.intValue() : qrCostPoints;
+        RecentScanCache.Entry recent = recentScans.lookup(
+                RecentScanCache.key(currentUser.getUid(), ScanPayload.Type.EARN_ID, voucherId),
+                System.currentTimeMillis());
+        if (recent != null) {
+            showToast(recent.outcome == RecentScanCache.Outcome.REJECTED ? recent.message : "Already scanned");
+        } else if (batchCodes.containsKey(voucherId)) {
+            showToast("Already in this batch");
+        } else if (batchCodes.size() >= MAX_BATCH) {
+            showToast("Batch is full, add the points first");
+        } else {
+            batchCodes.put(voucherId, System.currentTimeMillis());
+            triggerHapticFeedback(30);
+            bindBatchBar();
+        }
 
-            if (type == null || !"REDEEM".equalsIgnoreCase(type)) {
-                throw new FirebaseFirestoreException("Wrong code type",
-                        FirebaseFirestoreException.Code.ABORTED);
-            }
+        isProcessingScan = false;
+        decoderFactory.resume(BATCH_COOLDOWN_MS);
+    }
 
-            if (status == null) {
-                throw new FirebaseFirestoreException("Invalid code status",
-                        FirebaseFirestoreException.Code.DATA_LOSS);
-            }
+    private void commitBatch() {
+        FirebaseUser currentUser = auth.getCurrentUser();
+        if (currentUser == null) {
+            showError("Authentication required");
+            return;
+        }
+        if (batchCodes.isEmpty()) return;
+
+        final String uid = currentUser.getUid();
+        final List<LedgerOp> ops = new ArrayList<>(batchCodes.size());
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Long> e : batchCodes.entrySet()) {
+            ops.add(LedgerOp.earn(e.getKey(), e.getValue()));
+            recentScans.put(RecentScanCache.key(uid, ScanPayload.Type.EARN_ID, e.getKey()),
+                    RecentScanCache.Outcome.PENDING, "Adding your points", now);
+        }
+        batchMode = false;
+        batchCodes.clear();
+        bindBatchBar();
+
+        isProcessingScan = true;
+        decoderFactory.suspend();
+        trace.codeFound();
+        trace.txRequested();
+        showSuccess("Pending…", "Adding " + ops.size() + (ops.size() == 1 ? " receipt" : " receipts"));
+        PointsTransactions.batch(uid, ops)
+                .addOnSuccessListener(result -> {
+                    trace.txCommitted();
+                    showBatchSummary(uid, result);
+                })
+                .addOnFailureListener(e -> {
+                    // The engine reports per-op failures in the result; this is a last resort
+                    trace.txDeferred();
+                    for (LedgerOp op : ops) deferEarn(uid, op.targetId);
+                    updateSuccess("Scans saved", "Points will be added when you're back online");
+                });
+    }
 
-            // From cashier app: ACTIVE when generated
-            if (!"ACTIVE".equalsIgnoreCase(status)) {
-                throw new FirebaseFirestoreException("Code already " + status,
-                        FirebaseFirestoreException.Code.ABORTED);
+    private void showBatchSummary(@NonNull String uid, @NonNull BatchResult result) {
+        int added = 0, refused = 0, deferred = 0, failed = 0;
+        long now = System.currentTimeMillis();
+        for (BatchResult.Outcome o : result.outcomes) {
+            String key = RecentScanCache.key(uid, ScanPayload.Type.EARN_ID, o.op.targetId);
+            if (o.ok()) {
+                added++;
+                recentScans.put(key, RecentScanCache.Outcome.SUCCESS,
+                        "+" + ((EarnResult) o.result).points + " Points", now);
+            } else if (o.refused()) {
+                refused++;
+                rememberRefusal(key, o.error, earnErrorMessage(o.error));
+            } else if (PointsTransactions.isTransient(o.error)) {
+                // The transaction itself did not go through: hand these to the offline queue
+                deferred++;
+                deferEarn(uid, o.op.targetId);
+            } else {
+                // The whole transaction failed (gave up on contention, user refused...);
+                // nothing is known about this code, so a rescan must try again
+                failed++;
+                recentScans.remove(key);
             }
+        }
 
-            long userBalance = userSnap.getLong("points") != null ? userSnap.getLong("points") : 0L;
+        StringBuilder details = new StringBuilder(added + (added == 1 ? " receipt added" : " receipts added"));
+        if (refused > 0) details.append(" · ").append(refused).append(" refused");
+        if (deferred > 0) details.append(" · ").append(deferred).append(" will sync later");
+        if (failed > 0) details.append(" · ").append(failed).append(" failed, scan again");
+        updateSuccess("+" + result.pointsDelta + " Points", details.toString());
+        markResultShown();
+    }
 
-            if (userBalance < costPoints) {
-                throw new FirebaseFirestoreException("Insufficient Points",
-                        FirebaseFirestoreException.Code.ABORTED);
+    private void deferEarn(@NonNull String uid, @NonNull final String voucherId) {
+        final String key = RecentScanCache.key(uid, ScanPayload.Type.EARN_ID, voucherId);
+        // The batch may have committed before it failed; let the queue accept its own earns
+        ScanQueue.get(requireContext()).submit(uid, voucherId, true, new ScanQueue.Callback() {
+            @Override public void onSynced(@NonNull EarnResult result) {
+                recentScans.put(key, RecentScanCache.Outcome.SUCCESS,
+                        "+" + result.points + " Points", System.currentTimeMillis());
             }
-
-            // 1. Deduct Points
-            Map<String, Object> uUpd = new HashMap<>();
-            uUpd.put("points", userBalance - costPoints);
-            uUpd.put("updatedAt", FieldValue.serverTimestamp());
-            transaction.update(userRef, uUpd);
-
-            // 2. Mark Redemption as completed
-            Map<String, Object> rUpd = new HashMap<>();
-            rUpd.put("status", "completed");
-            rUpd.put("completedAt", FieldValue.serverTimestamp());
-            rUpd.put("completedByUid", currentUser.getUid());
-            transaction.update(redeemRef, rUpd);
-
-            // 3. Log Activity
-            Map<String, Object> log = new HashMap<>();
-            log.put("type", "spend");
-            log.put("points", -costPoints);
-            log.put("item", itemName);
-            log.put("redeemCodeId", redeemDocId);
-            log.put("ts", FieldValue.serverTimestamp());
-            transaction.set(activityRef, log);
-
-            return itemName != null ? itemName : "Reward";
-
-        }).addOnSuccessListener(itemName ->
-                showSuccess("Confirmed!", "Redeemed: " + itemName)
-        ).addOnFailureListener(e -> {
-            String msg = e.getMessage() != null ? e.getMessage() : "Redemption failed";
-            if (msg.toLowerCase().contains("not found")) msg = "Invalid redeem code";
-            showError(msg);
+            @Override public void onRejected(@NonNull Exception e) {
+                rememberRefusal(key, e, earnErrorMessage(e));
+            }
+            @Override public void onDeferred() {}
         });
     }
 
+    /**
+     * Replays {@code msg} for rescans only when the code itself is settled (used, expired,
+     * unknown, another account's). Anything else, such as a short balance, is tried again.
+     */
+    private void rememberRefusal(@NonNull String key, @NonNull Exception e, @NonNull String msg) {
+        if (PointsTransactions.isFinalRefusal(e)) {
+            recentScans.put(key, RecentScanCache.Outcome.REJECTED, msg, System.currentTimeMillis());
+        } else {
+            recentScans.remove(key);
+        }
+    }
+
+    /** @return true when {@code key} was handled recently and its outcome has been shown again. */
+    private boolean replayRecent(@NonNull String key) {
+        RecentScanCache.Entry hit = recentScans.lookup(key, System.currentTimeMillis());
+        if (hit == null) return false;
+        switch (hit.outcome) {
+            case SUCCESS:  showSuccess("Already done", hit.message); break;
+            case PENDING:  showSuccess("Pending…", "This code is already being processed"); break;
+            case REJECTED: showError(hit.message); break;
+        }
+        return true;
+    }
+
     // ============================================================================================
     // UI HELPERS
     // ============================================================================================
@@ -426,13 +565,26 @@ public class ScanFragment extends Fragment {
             pauseScanner();
             if (successMessage != null) successMessage.setText(main);
             if (successDetails != null) successDetails.setText(sub);
-            if (successOverlay != null) successOverlay.setVisibility(View.VISIBLE);
+            if (successOverlay != null) {
+                successOverlay.setVisibility(View.VISIBLE);
+                successOverlay.post(trace::overlayShown);
+            }
 
-            uiHandler.postDelayed(() -> {
-                hideSuccess();
-                resetScanState();
-                resumeScanner();
-            }, OVERLAY_MS);
+            uiHandler.removeCallbacks(overlayTimeout);
+            uiHandler.postDelayed(overlayTimeout, OVERLAY_MS);
+        });
+    }
+
+    /** Refreshes the success overlay in place, or falls back to a toast once it is gone. */
+    private void updateSuccess(String main, String sub) {
+        runOnUi(() -> {
+            if (!isAdded()) return;
+            if (successOverlay != null && successOverlay.getVisibility() == View.VISIBLE) {
+                if (successMessage != null) successMessage.setText(main);
+                if (successDetails != null) successDetails.setText(sub);
+            } else {
+                showToast(main + " — " + sub);
+            }
         });
     }
 
@@ -447,9 +599,24 @@ public class ScanFragment extends Fragment {
     private void showError(String msg) {
         runOnUi(() -> {
             if (!isAdded()) return;
+            uiHandler.removeCallbacks(overlayTimeout);
+            if (successOverlay != null) successOverlay.setVisibility(View.GONE);
             pauseScanner();
             if (errorMessage != null) errorMessage.setText(msg);
-            if (errorOverlay != null) errorOverlay.setVisibility(View.VISIBLE);
+            if (errorOverlay != null) {
+                errorOverlay.setVisibility(View.VISIBLE);
+                errorOverlay.post(() -> {
+                    trace.overlayShown();
+                    trace.resultShown();
+                });
+            }
+        });
+    }
+
+    /** Queued after the overlay update, so it fires once the confirmed text has been laid out. */
+    private void markResultShown() {
+        runOnUi(() -> {
+            if (successOverlay != null) successOverlay.post(trace::resultShown);
         });
     }
 
@@ -468,7 +635,7 @@ public class ScanFragment extends Fragment {
 
     private void resetScanState() {
         isProcessingScan = false;
-        lastScanTimestamp = System.currentTimeMillis();
+        decoderFactory.resume(decodeConfig.cooldownMs);
     }
 
     private void showToast(String message) {
@@ -507,7 +674,9 @@ public class ScanFragment extends Fragment {
     }
 
     private void resumeScanner() {
-        if (isAdded() && barcodeView != null) barcodeView.resume();
+        if (!isAdded() || barcodeView == null) return;
+        if (!barcodeView.getBarcodeView().isPreviewActive()) trace.cameraStarting();
+        barcodeView.resume();
     }
 
     private void pauseScanner() {
@@ -0,0 +1,44 @@
+package com.example.loyaltyapp.ledger;
+
+import java.util.Collections;
+import java.util.List;
+
+/** Per-operation outcomes of a batch, in submission order. */
+public final class BatchResult {
+
+    public static final class Outcome {
+        public final LedgerOp op;
+        /** {@link EarnResult} or {@link SpendResult}; null when {@link #error} is set. */
+        public final Object result;
+        /** Why the operation did not apply: a {@link LedgerException} or a store failure. */
+        public final Exception error;
+        private final boolean refused;
+
+        Outcome(LedgerOp op, Object result, Exception error, boolean refused) {
+            this.op = op;
+            this.result = result;
+            this.error = error;
+            this.refused = refused;
+        }
+
+        public boolean ok() { return error == null; }
+
+        /**
+         * True when this operation's own checks refused it. False when the whole transaction
+         * failed (contention, the user read, the store), which says nothing about the operation.
+         */
+        public boolean refused() { return refused; }
+    }
+
+    public final List<Outcome> outcomes;
+    /** Net points change over the applied operations. */
+    public final int pointsDelta;
+    /** Transactions committed (or attempted) to process the batch. */
+    public final int transactions;
+
+    BatchResult(List<Outcome> outcomes, int pointsDelta, int transactions) {
+        this.outcomes = Collections.unmodifiableList(outcomes);
+        this.pointsDelta = pointsDelta;
+        this.transactions = transactions;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.loyaltyapp.ledger;
+
+/** Outcome of an earn: the points credited and whether it opened a new visit. */
+public final class EarnResult {
+    public final int points;
+    public final boolean visitCounted;
+
+    EarnResult(int points, boolean visitCounted) {
+        this.points = points;
+        this.visitCounted = visitCounted;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.loyaltyapp.ledger;
+
+/** Completion of a ledger operation; the thread it runs on is the store's choice. */
+public interface LedgerCallback<T> {
+    void onSuccess(T result);
+
+    /** A {@link LedgerException}, or the store's own exception type for backend failures. */
+    void onFailure(Exception e);
+}
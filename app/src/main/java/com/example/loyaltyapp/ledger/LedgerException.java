@@ -0,0 +1,40 @@
+package com.example.loyaltyapp.ledger;
+
+/** A points operation that was refused, or a store failure surfaced through the engine. */
+public class LedgerException extends Exception {
+
+    public enum Code {
+        /** The voucher, redeem code or reward does not exist. */
+        NOT_FOUND,
+        /** The user's own document does not exist (yet). */
+        NO_USER,
+        /** The stored document is malformed (missing status, wrong type...). */
+        INVALID,
+        /** Used, expired or inactive; retrying will not help. */
+        REJECTED,
+        /** The balance does not cover the cost. */
+        INSUFFICIENT_POINTS,
+        /** The code targets another account. */
+        PERMISSION_DENIED,
+        /** The store gave up after repeated contention. */
+        ABORTED,
+        /** The backing store failed; see the cause. */
+        UNAVAILABLE
+    }
+
+    private final Code code;
+
+    public LedgerException(Code code, String message) {
+        super(message);
+        this.code = code;
+    }
+
+    public LedgerException(Code code, String message, Throwable cause) {
+        super(message, cause);
+        this.code = code;
+    }
+
+    public Code getCode() {
+        return code;
+    }
+}
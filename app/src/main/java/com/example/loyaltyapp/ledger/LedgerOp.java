@@ -0,0 +1,43 @@
+package com.example.loyaltyapp.ledger;
+
+/** One operation of a batch handed to {@link LoyaltyTransactionService#batch}. */
+public final class LedgerOp {
+
+    public enum Kind { EARN, SPEND, REDEEM }
+
+    public final Kind kind;
+    /** Voucher ID (earn), redeem code ID (spend) or reward ID (redeem). */
+    public final String targetId;
+    /** Scan time for earns; cost carried in the QR for spends; unused for redeems. */
+    public final long arg;
+    /** Earns only: an earlier attempt of this same scan may already have committed. */
+    public final boolean replay;
+
+    private LedgerOp(Kind kind, String targetId, long arg, boolean replay) {
+        this.kind = kind;
+        this.targetId = targetId;
+        this.arg = arg;
+        this.replay = replay;
+    }
+
+    public static LedgerOp earn(String voucherId, long scannedAtMillis) {
+        return new LedgerOp(Kind.EARN, voucherId, scannedAtMillis, false);
+    }
+
+    /**
+     * An earn retried after an attempt whose outcome is unknown (a queued scan, a batch that
+     * failed in flight). If that attempt went through, the earn resolves as success instead
+     * of being refused as already redeemed.
+     */
+    public static LedgerOp replayEarn(String voucherId, long scannedAtMillis) {
+        return new LedgerOp(Kind.EARN, voucherId, scannedAtMillis, true);
+    }
+
+    public static LedgerOp spend(String redeemCodeId, int fallbackCost) {
+        return new LedgerOp(Kind.SPEND, redeemCodeId, fallbackCost, false);
+    }
+
+    public static LedgerOp redeem(String rewardId) {
+        return new LedgerOp(Kind.REDEEM, rewardId, 0L, false);
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.loyaltyapp.ledger;
+
+/**
+ * Storage the transaction engine runs on. Implementations run {@link Body} atomically,
+ * re-running it on contention like Firestore does, and report the outcome to the callback.
+ */
+public interface LedgerStore {
+
+    interface Body<T> {
+        /** May run more than once; must not have side effects outside {@code tx}. */
+        T apply(LedgerTransaction tx) throws LedgerException;
+    }
+
+    <T> void run(Body<T> body, LedgerCallback<T> callback);
+}
@@ -0,0 +1,29 @@
+package com.example.loyaltyapp.ledger;
+
+import java.util.Map;
+
+/**
+ * One attempt of a store transaction. Documents are addressed by slash-separated paths
+ * ("users/{uid}") and exchanged as plain maps: numbers as {@link Number}, timestamps as
+ * {@link java.util.Date}. As in Firestore, every read must happen before the first write.
+ */
+public interface LedgerTransaction {
+
+    /** @return the document's fields, or null when it does not exist. */
+    Map<String, Object> get(String path) throws LedgerException;
+
+    /** Creates or overwrites a document. */
+    void set(String path, Map<String, Object> data);
+
+    /** Updates fields of an existing document; the commit fails if it is missing. */
+    void update(String path, Map<String, Object> fields);
+
+    /**
+     * Merges {@code data} into the document, creating it if needed. Nested maps merge
+     * field by field, so increments inside them add to what is stored.
+     */
+    void merge(String path, Map<String, Object> data);
+
+    /** A fresh document ID under {@code collectionPath}. */
+    String newId(String collectionPath);
+}
@@ -0,0 +1,27 @@
+package com.example.loyaltyapp.ledger;
+
+/** Special field values the stores translate into their own representation. */
+public final class LedgerValues {
+
+    /** Replaced with the commit time by the store (FieldValue.serverTimestamp() on Firestore). */
+    public static final Object SERVER_TIME = new Object() {
+        @Override public String toString() { return "SERVER_TIME"; }
+    };
+
+    /** Adds {@link #amount} to the stored number at commit (FieldValue.increment() on Firestore). */
+    public static final class Increment {
+        public final long amount;
+
+        Increment(long amount) {
+            this.amount = amount;
+        }
+
+        @Override public String toString() { return "increment(" + amount + ")"; }
+    }
+
+    public static Increment increment(long amount) {
+        return new Increment(amount);
+    }
+
+    private LedgerValues() {}
+}
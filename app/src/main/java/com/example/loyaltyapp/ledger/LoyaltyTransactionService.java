@@ -0,0 +1,490 @@
+package com.example.loyaltyapp.ledger;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The points engine: earning from a voucher, spending with a cashier redeem code and
+ * redeeming a catalog reward, singly or as a batch. Pure Java on top of a {@link LedgerStore},
+ * so the same bodies run on Firestore in the app and on an in-memory store in tests.
+ *
+ * <p>Every transaction reads all target documents first, validates each operation, then
+ * writes one user update plus the per-operation documents. Points and visits are written as
+ * server-side increments, so the user document is only read when a decision needs it: the
+ * balance check of a spend or redeem, and the 4-hour visit rule unless {@link VisitHints}
+ * already show a visit inside the window. Every activity entry has {@code type}, {@code points}
+ * and {@code ts}; the rest depends on the type:
+ * <ul>
+ *   <li>{@code earn}: points gained, {@code voucherId}</li>
+ *   <li>{@code spend}: the cost as negative points, {@code item}, {@code redeemCodeId}</li>
+ *   <li>{@code redeem}: the cost as positive points, {@code rewardName}, {@code rewardId}</li>
+ *   <li>{@code bonus}: points gained, {@code item} ("Birthday")</li>
+ * </ul>
+ *
+ * <p>Each commit also folds its totals into users/{uid}/stats/aggregate with a blind merge of
+ * increments (lifetime earned/spent, per-month buckets, last activity time), so screens can
+ * show history-wide numbers from one small document.
+ */
+public final class LoyaltyTransactionService {
+
+    public interface Clock {
+        long nowMillis();
+    }
+
+    public static final Clock SYSTEM_CLOCK = System::currentTimeMillis;
+
+    /** Locally known state that lets an earn skip reading the user document. */
+    public interface VisitHints {
+        /** Last visit known for {@code uid}, or null when unknown. Visits only move forward. */
+        Date lastVisit(String uid);
+    }
+
+    public static final VisitHints NO_HINTS = uid -> null;
+
+    /** Points granted by {@link #birthdayBonus}. */
+    public static final int BIRTHDAY_BONUS = 15;
+
+    // 4 Hours in Milliseconds
+    static final long VISIT_WINDOW_MILLIS = 4 * 60 * 60 * 1000L;
+
+    /** Each operation writes two documents besides the shared user update; stays far below Firestore's 500. */
+    public static final int MAX_OPS_PER_TRANSACTION = 100;
+
+    private final LedgerStore store;
+    private final Clock clock;
+    private final VisitHints hints;
+
+    public LoyaltyTransactionService(LedgerStore store, Clock clock) {
+        this(store, clock, NO_HINTS);
+    }
+
+    public LoyaltyTransactionService(LedgerStore store, Clock clock, VisitHints hints) {
+        this.store = store;
+        this.clock = clock;
+        this.hints = hints;
+    }
+
+    /**
+     * Redeems earn_codes/{voucherId}. A voucher that is already redeemed is refused, even by
+     * the user who redeemed it, unless {@code replay} is set and that user's activity entry
+     * for it (keyed on the voucher ID) exists: then the earlier attempt went through, and the
+     * earn resolves as success without writing again.
+     *
+     * @param scannedAtMillis expiry is checked against the scan time, not the commit time.
+     * @param replay          true when an earlier attempt of this scan may have committed,
+     *                        i.e. when the scan is replayed from the offline queue.
+     */
+    public void earn(String uid, String voucherId, long scannedAtMillis, boolean replay,
+                     LedgerCallback<EarnResult> cb) {
+        final LedgerOp op = replay
+                ? LedgerOp.replayEarn(voucherId, scannedAtMillis)
+                : LedgerOp.earn(voucherId, scannedAtMillis);
+        final Date hint = hints.lastVisit(uid);
+        store.run(tx -> (EarnResult) single(tx, uid, hint, op), cb);
+    }
+
+    /** @param fallbackCost cost carried in the QR, used only when the code has no costPoints. */
+    public void spend(String uid, String redeemCodeId, int fallbackCost, LedgerCallback<SpendResult> cb) {
+        final LedgerOp op = LedgerOp.spend(redeemCodeId, fallbackCost);
+        store.run(tx -> (SpendResult) single(tx, uid, null, op), cb);
+    }
+
+    /** Redeems Rewards/{rewardId}; the cost is read from the reward, never from the UI. */
+    public void redeem(String uid, String rewardId, LedgerCallback<SpendResult> cb) {
+        final LedgerOp op = LedgerOp.redeem(rewardId);
+        store.run(tx -> (SpendResult) single(tx, uid, null, op), cb);
+    }
+
+    /**
+     * Grants the birthday bonus once per {@code dayKey} (yyyy-MM-dd): the check against
+     * lastBirthdayReward and the increment commit together, so two devices opening the app
+     * on the same birthday cannot both add it. Delivers true when the bonus was granted and
+     * false when it had already been granted that day.
+     */
+    public void birthdayBonus(final String uid, final String dayKey, LedgerCallback<Boolean> cb) {
+        store.run(tx -> {
+            String userPath = "users/" + uid;
+            Map<String, Object> user = tx.get(userPath);
+            if (user == null) {
+                throw new LedgerException(LedgerException.Code.NO_USER, "User not found");
+            }
+            if (dayKey.equals(user.get("lastBirthdayReward"))) return false;
+
+            Map<String, Object> upd = new HashMap<>();
+            upd.put("points", LedgerValues.increment(BIRTHDAY_BONUS));
+            upd.put("lastBirthdayReward", dayKey);
+            upd.put("updatedAt", LedgerValues.SERVER_TIME);
+            tx.update(userPath, upd);
+
+            Map<String, Object> log = new HashMap<>();
+            log.put("type", "bonus");
+            log.put("points", BIRTHDAY_BONUS);
+            log.put("item", "Birthday");
+            log.put("ts", new Date(clock.nowMillis()));
+            tx.set(userPath + "/activities/birthday_" + dayKey, log);
+            tx.merge(statsPath(uid), statsDelta(BIRTHDAY_BONUS, 0, clock.nowMillis()));
+            return true;
+        }, cb);
+    }
+
+    /**
+     * Applies many operations for one user in as few transactions as possible
+     * ({@link #MAX_OPS_PER_TRANSACTION} per transaction). A refused operation is reported in
+     * its outcome and does not stop the others. If a transaction itself fails, its operations
+     * and all later ones carry that failure; earlier transactions stay committed.
+     * The callback always receives a {@link BatchResult}.
+     */
+    public void batch(String uid, List<LedgerOp> ops, LedgerCallback<BatchResult> cb) {
+        runChunk(uid, hints.lastVisit(uid), new ArrayList<>(ops), 0,
+                new ArrayList<BatchResult.Outcome>(), 0, 0, cb);
+    }
+
+    // ---------------------------------------------------------------------------------------
+
+    private Object single(LedgerTransaction tx, String uid, Date hint, LedgerOp op) throws LedgerException {
+        Session s = new Session(tx, uid, hint, clock.nowMillis());
+        List<LedgerOp> ops = new ArrayList<>(1);
+        ops.add(op);
+        s.read(ops);
+        Object result = s.apply(op);
+        s.write();
+        return result;
+    }
+
+    private static final class ChunkResult {
+        final List<BatchResult.Outcome> outcomes;
+        final int delta;
+
+        ChunkResult(List<BatchResult.Outcome> outcomes, int delta) {
+            this.outcomes = outcomes;
+            this.delta = delta;
+        }
+    }
+
+    private void runChunk(final String uid, final Date hint, final List<LedgerOp> ops, final int from,
+                          final List<BatchResult.Outcome> outcomes, final int delta, final int transactions,
+                          final LedgerCallback<BatchResult> cb) {
+        if (from >= ops.size()) {
+            cb.onSuccess(new BatchResult(outcomes, delta, transactions));
+            return;
+        }
+        final List<LedgerOp> chunk = ops.subList(from, Math.min(ops.size(), from + MAX_OPS_PER_TRANSACTION));
+
+        store.run(tx -> {
+            Session s = new Session(tx, uid, hint, clock.nowMillis());
+            s.read(chunk);
+            List<BatchResult.Outcome> out = new ArrayList<>(chunk.size());
+            for (LedgerOp op : chunk) {
+                try {
+                    out.add(new BatchResult.Outcome(op, s.apply(op), null, false));
+                } catch (LedgerException e) {
+                    out.add(new BatchResult.Outcome(op, null, e, true));
+                }
+            }
+            s.write();
+            return new ChunkResult(out, s.delta());
+        }, new LedgerCallback<ChunkResult>() {
+            @Override public void onSuccess(ChunkResult r) {
+                outcomes.addAll(r.outcomes);
+                runChunk(uid, hint, ops, from + chunk.size(), outcomes, delta + r.delta, transactions + 1, cb);
+            }
+
+            @Override public void onFailure(Exception e) {
+                for (int i = from; i < ops.size(); i++) {
+                    outcomes.add(new BatchResult.Outcome(ops.get(i), null, e, false));
+                }
+                cb.onSuccess(new BatchResult(outcomes, delta, transactions + 1));
+            }
+        });
+    }
+
+    private static final class PendingWrite {
+        final String path;
+        final Map<String, Object> data;
+        final boolean create;
+
+        PendingWrite(String path, Map<String, Object> data, boolean create) {
+            this.path = path;
+            this.data = data;
+            this.create = create;
+        }
+    }
+
+    /**
+     * One transaction attempt: the documents read, the running user state and the pending
+     * writes. {@link #apply} validates an operation completely before touching any state.
+     */
+    private static final class Session {
+        private final LedgerTransaction tx;
+        private final String uid;
+        private final String userPath;
+        private final long now;
+
+        private final Map<String, Map<String, Object>> docs = new HashMap<>();
+        private final Set<String> consumed = new HashSet<>();
+        private final List<PendingWrite> writes = new ArrayList<>();
+        private final Map<String, Object> userUpdate = new LinkedHashMap<>();
+
+        private long balance;   // stored points; read whenever a spend or redeem is in the session
+        private long earned;    // points added by this session
+        private long spent;     // points removed by this session
+        private Date lastVisit;
+        private boolean visitCounted;
+
+        Session(LedgerTransaction tx, String uid, Date hint, long now) {
+            this.tx = tx;
+            this.uid = uid;
+            this.userPath = "users/" + uid;
+            this.now = now;
+            this.lastVisit = hint;
+        }
+
+        void read(List<LedgerOp> ops) throws LedgerException {
+            // A hinted visit inside the window stays inside it (visits only move forward),
+            // so earns alone can skip the user read and keep it out of the contention set.
+            boolean hintedRecent = lastVisit != null && now - lastVisit.getTime() <= VISIT_WINDOW_MILLIS;
+            boolean needUser = !hintedRecent;
+            for (LedgerOp op : ops) {
+                if (op.kind != LedgerOp.Kind.EARN) needUser = true;
+            }
+
+            if (needUser) {
+                Map<String, Object> user = tx.get(userPath);
+                if (user == null) {
+                    throw new LedgerException(LedgerException.Code.NO_USER, "User not found");
+                }
+                balance = asLong(user.get("points"));
+                Object lv = user.get("lastVisitTimestamp");
+                lastVisit = lv instanceof Date ? (Date) lv : null;
+            }
+
+            for (LedgerOp op : ops) {
+                String path = pathOf(op);
+                if (!docs.containsKey(path)) docs.put(path, tx.get(path));
+                if (op.replay) {
+                    // Whether the earlier attempt logged its activity
+                    String log = earnLogPath(op);
+                    if (!docs.containsKey(log)) docs.put(log, tx.get(log));
+                }
+            }
+        }
+
+        Object apply(LedgerOp op) throws LedgerException {
+            switch (op.kind) {
+                case EARN:  return earn(op);
+                case SPEND: return spend(op);
+                default:    return redeem(op);
+            }
+        }
+
+        int delta() {
+            return (int) (earned - spent);
+        }
+
+        void write() {
+            long delta = earned - spent;
+            if (delta != 0) userUpdate.put("points", LedgerValues.increment(delta));
+            if (visitCounted) {
+                userUpdate.put("visits", LedgerValues.increment(1));
+                userUpdate.put("lastVisitTimestamp", lastVisit);
+            }
+            if (!userUpdate.isEmpty()) {
+                userUpdate.put("updatedAt", LedgerValues.SERVER_TIME);
+                tx.update(userPath, userUpdate);
+            }
+            for (PendingWrite w : writes) {
+                if (w.create) tx.set(w.path, w.data);
+                else tx.update(w.path, w.data);
+            }
+            if (earned != 0 || spent != 0) tx.merge(statsPath(uid), statsDelta(earned, spent, now));
+        }
+
+        private EarnResult earn(LedgerOp op) throws LedgerException {
+            String path = pathOf(op);
+            Map<String, Object> v = docs.get(path);
+            if (v == null) {
+                throw new LedgerException(LedgerException.Code.NOT_FOUND, "Voucher not found");
+            }
+
+            String status = asString(v.get("status"));
+            int pts = (int) asLong(v.get("points"));
+            if (status == null) {
+                throw new LedgerException(LedgerException.Code.INVALID, "Invalid voucher");
+            }
+
+            // Replay of a queued scan whose earlier attempt went through for this user
+            if (op.replay && "redeemed".equalsIgnoreCase(status) && uid.equals(v.get("redeemedByUid"))
+                    && docs.get(earnLogPath(op)) != null && !consumed.contains(path)) {
+                consumed.add(path);
+                return new EarnResult(pts, false);
+            }
+            if (!"pending".equalsIgnoreCase(status) || consumed.contains(path)) {
+                throw new LedgerException(LedgerException.Code.REJECTED,
+                        "Voucher is " + (consumed.contains(path) ? "redeemed" : status));
+            }
+
+            Object createdAt = v.get("createdAt");
+            Object validForSec = v.get("validForSec");
+            if (createdAt instanceof Date && validForSec instanceof Number) {
+                long ageMs = op.arg - ((Date) createdAt).getTime();
+                if (ageMs > ((Number) validForSec).longValue() * 1000L) {
+                    throw new LedgerException(LedgerException.Code.REJECTED, "Voucher expired");
+                }
+            }
+
+            // --- VISIT LOGIC: a new visit after 4 hours without one ---
+            boolean visit = lastVisit == null || now - lastVisit.getTime() > VISIT_WINDOW_MILLIS;
+            if (visit) {
+                visitCounted = true;
+                lastVisit = new Date(now);
+            }
+            earned += pts;
+            consumed.add(path);
+
+            Map<String, Object> vUpd = new HashMap<>();
+            vUpd.put("status", "redeemed");
+            vUpd.put("redeemedAt", new Date(now));
+            vUpd.put("redeemedByUid", uid);
+            writes.add(new PendingWrite(path, vUpd, false));
+
+            Map<String, Object> log = activity("earn", pts);
+            log.put("voucherId", op.targetId);
+            writes.add(new PendingWrite(earnLogPath(op), log, true));
+
+            return new EarnResult(pts, visit);
+        }
+
+        private String earnLogPath(LedgerOp op) {
+            return userPath + "/activities/earn_" + op.targetId;
+        }
+
+        private SpendResult spend(LedgerOp op) throws LedgerException {
+            String path = pathOf(op);
+            Map<String, Object> c = docs.get(path);
+            if (c == null) {
+                throw new LedgerException(LedgerException.Code.NOT_FOUND, "Redemption code not found");
+            }
+
+            // Ownership: this doc must target this user
+            String targetUid = asString(c.get("userUid"));
+            if (targetUid != null && !targetUid.equals(uid)) {
+                throw new LedgerException(LedgerException.Code.PERMISSION_DENIED, "Code belongs to another user");
+            }
+
+            String status = asString(c.get("status"));
+            String type = asString(c.get("type"));
+            String itemName = asString(c.get("itemName"));
+            int cost = c.get("costPoints") instanceof Number
+                    ? ((Number) c.get("costPoints")).intValue() : (int) op.arg;
+
+            if (type == null || !"REDEEM".equalsIgnoreCase(type)) {
+                throw new LedgerException(LedgerException.Code.REJECTED, "Wrong code type");
+            }
+            if (status == null) {
+                throw new LedgerException(LedgerException.Code.INVALID, "Invalid code status");
+            }
+            // From cashier app: ACTIVE when generated
+            if (!"ACTIVE".equalsIgnoreCase(status) || consumed.contains(path)) {
+                throw new LedgerException(LedgerException.Code.REJECTED,
+                        "Code already " + (consumed.contains(path) ? "completed" : status));
+            }
+            if (balance + earned - spent < cost) {
+                throw new LedgerException(LedgerException.Code.INSUFFICIENT_POINTS, "Insufficient Points");
+            }
+
+            spent += cost;
+            consumed.add(path);
+
+            Map<String, Object> cUpd = new HashMap<>();
+            cUpd.put("status", "completed");
+            cUpd.put("completedAt", LedgerValues.SERVER_TIME);
+            cUpd.put("completedByUid", uid);
+            writes.add(new PendingWrite(path, cUpd, false));
+
+            Map<String, Object> log = activity("spend", -cost);
+            log.put("item", itemName);
+            log.put("redeemCodeId", op.targetId);
+            writes.add(new PendingWrite(userPath + "/activities/spend_" + op.targetId, log, true));
+
+            return new SpendResult(cost, itemName != null ? itemName : "Reward");
+        }
+
+        private SpendResult redeem(LedgerOp op) throws LedgerException {
+            Map<String, Object> r = docs.get(pathOf(op));
+            if (r == null) {
+                throw new LedgerException(LedgerException.Code.NOT_FOUND, "Reward not found");
+            }
+            if (Boolean.FALSE.equals(r.get("active"))) {
+                throw new LedgerException(LedgerException.Code.REJECTED, "Reward not active");
+            }
+            int cost = (int) asLong(r.get("redeemPoints"));
+            if (balance + earned - spent < cost) {
+                throw new LedgerException(LedgerException.Code.INSUFFICIENT_POINTS, "Not enough points");
+            }
+
+            spent += cost;
+
+            String name = asString(r.get("name"));
+            // Catalog redemptions keep the shape they always had: the cost stored positive
+            // (ActivityEvent shows redemptions as negative either way) and the name under rewardName
+            Map<String, Object> log = activity("redeem", cost);
+            log.put("rewardName", name);
+            log.put("rewardId", op.targetId);
+            writes.add(new PendingWrite(userPath + "/activities/" + tx.newId(userPath + "/activities"), log, true));
+
+            return new SpendResult(cost, name != null ? name : "Reward");
+        }
+
+        private Map<String, Object> activity(String type, int points) {
+            Map<String, Object> log = new HashMap<>();
+            log.put("type", type);
+            log.put("points", points);
+            log.put("ts", new Date(now));
+            return log;
+        }
+    }
+
+    static String statsPath(String uid) {
+        return "users/" + uid + "/stats/aggregate";
+    }
+
+    /** Increments for the aggregate document; month buckets are keyed yyyy-MM in local time. */
+    static Map<String, Object> statsDelta(long earned, long spent, long now) {
+        Map<String, Object> month = new HashMap<>();
+        month.put("earned", LedgerValues.increment(earned));
+        month.put("spent", LedgerValues.increment(spent));
+        Map<String, Object> months = new HashMap<>();
+        months.put(new SimpleDateFormat("yyyy-MM", Locale.US).format(new Date(now)), month);
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("lifetimeEarned", LedgerValues.increment(earned));
+        stats.put("lifetimeSpent", LedgerValues.increment(spent));
+        stats.put("months", months);
+        stats.put("lastActivityTs", new Date(now));
+        return stats;
+    }
+
+    static String pathOf(LedgerOp op) {
+        switch (op.kind) {
+            case EARN:  return "earn_codes/" + op.targetId;
+            case SPEND: return "redeem_codes/" + op.targetId;
+            default:    return "Rewards/" + op.targetId;
+        }
+    }
+
+    private static long asLong(Object o) {
+        return o instanceof Number ? ((Number) o).longValue() : 0L;
+    }
+
+    private static String asString(Object o) {
+        return o instanceof String ? (String) o : null;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.loyaltyapp.ledger;
+
+/** Outcome of a spend or a reward redemption: the points debited and what they bought. */
+public final class SpendResult {
+    public final int points;
+    public final String itemName;
+
+    SpendResult(int points, String itemName) {
+        this.points = points;
+        this.itemName = itemName;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.loyaltyapp.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size log-linear histogram of non-negative longs: every power of two is split into
+ * {@value #SUB_BUCKETS} buckets, so a percentile is off by at most 12.5% whatever the
+ * magnitude, and recording never allocates. Thread-safe.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long max;
+    private long sum;
+
+    public synchronized void record(long value) {
+        if (value < 0) value = 0;
+        counts[indexOf(value)]++;
+        total++;
+        sum += value;
+        if (value > max) max = value;
+    }
+
+    public synchronized long count() {
+        return total;
+    }
+
+    public synchronized long max() {
+        return max;
+    }
+
+    public synchronized double mean() {
+        return total == 0 ? 0d : (double) sum / total;
+    }
+
+    /**
+     * @param p percentile in (0, 100]
+     * @return upper bound of the bucket holding the nearest-rank value, never above
+     *         {@link #max()}; 0 when empty.
+     */
+    public synchronized long percentile(double p) {
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p / 100d * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(max, upperBound(i));
+        }
+        return max;
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        total = 0;
+        max = 0;
+        sum = 0;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exp = index / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        long width = 1L << (exp - SUB_BITS);
+        long lower = (long) (SUB_BUCKETS + sub) << (exp - SUB_BITS);
+        return lower + width - 1;
+    }
+}
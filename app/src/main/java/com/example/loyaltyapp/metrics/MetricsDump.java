@@ -0,0 +1,57 @@
+package com.example.loyaltyapp.metrics;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.function.Supplier;
+
+/**
+ * Writes a metrics report to logcat and to {@code files/metrics/<fileName>}. Opt-in per log
+ * tag: {@code adb shell setprop log.tag.<tag> DEBUG} enables {@link #dumpIfEnabled(Context)}.
+ */
+final class MetricsDump {
+
+    private final String tag;
+    private final String fileName;
+    private final Supplier<String> report;
+
+    MetricsDump(@NonNull String tag, @NonNull String fileName, @NonNull Supplier<String> report) {
+        this.tag = tag;
+        this.fileName = fileName;
+        this.report = report;
+    }
+
+    void dumpToLog() {
+        for (String line : report.get().split("\n")) Log.i(tag, line);
+    }
+
+    /** Overwrites the report file; returns it, or null on I/O failure. */
+    @Nullable
+    File dumpToFile(@NonNull Context context) {
+        File dir = new File(context.getFilesDir(), "metrics");
+        if (!dir.isDirectory() && !dir.mkdirs()) return null;
+        File out = new File(dir, fileName);
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(out), Charset.forName("UTF-8"))) {
+            w.write(report.get());
+            return out;
+        } catch (IOException e) {
+            Log.w(tag, "Could not write " + out, e);
+            return null;
+        }
+    }
+
+    void dumpIfEnabled(@NonNull Context context) {
+        if (!Log.isLoggable(tag, Log.DEBUG)) return;
+        dumpToLog();
+        dumpToFile(context);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.loyaltyapp.metrics;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Process-wide histograms for the scan pipeline, one per {@link Stage}. Filled by
+ * {@link ScanTrace}; read with {@link #report()}.
+ *
+ * <p>Dumping is opt-in so release builds stay quiet:
+ * {@code adb shell setprop log.tag.ScanMetrics DEBUG} makes {@link #dumpIfEnabled(Context)}
+ * log the table and write it to {@code files/metrics/scan.txt}.
+ */
+public final class ScanMetrics {
+
+    private static final String TAG = "ScanMetrics";
+
+    public enum Stage {
+        /** resume() until the camera preview is running. */
+        CAMERA_OPEN(true),
+        /** Preview running until the first frame went through the decoder. */
+        FIRST_FRAME(true),
+        /** One decoder pass over one frame, hit or miss. */
+        DECODE(true),
+        /** Decoded text until the flow (earn/spend) is chosen and the request is issued. */
+        PROCESS(true),
+        /** Request issued until the first run of the transaction body. */
+        TX_START(true),
+        /** Extra runs of the transaction body caused by contention. */
+        TX_RETRIES(false),
+        /** Request issued until the transaction is confirmed. */
+        TX_COMMIT(true),
+        /** Request issued until the scan was left to the offline queue instead. */
+        TX_DEFERRED(true),
+        /** Decoded text until the first overlay is on screen. */
+        OVERLAY(true),
+        /** Decoded text until the confirmed result is on screen. */
+        TOTAL(true);
+
+        final boolean timing;
+
+        Stage(boolean timing) {
+            this.timing = timing;
+        }
+    }
+
+    private static ScanMetrics instance;
+
+    private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+    private final MetricsDump dump = new MetricsDump(TAG, "scan.txt", this::report);
+    @Nullable private volatile ScanTrace activeTrace;
+
+    private ScanMetrics() {
+        for (Stage s : Stage.values()) histograms.put(s, new LatencyHistogram());
+    }
+
+    public static synchronized ScanMetrics get() {
+        if (instance == null) instance = new ScanMetrics();
+        return instance;
+    }
+
+    /** @param value microseconds for timing stages, a plain count otherwise. */
+    void record(@NonNull Stage stage, long value) {
+        histograms.get(stage).record(value);
+    }
+
+    @NonNull
+    public LatencyHistogram histogram(@NonNull Stage stage) {
+        return histograms.get(stage);
+    }
+
+    void setActiveTrace(@Nullable ScanTrace trace) {
+        activeTrace = trace;
+    }
+
+    /**
+     * Hook for the transaction runner: called at every run of a transaction body. Counted
+     * against the scan whose transaction is in flight, if any.
+     */
+    public void onTransactionAttempt() {
+        ScanTrace t = activeTrace;
+        if (t != null) t.attempt();
+    }
+
+    public void reset() {
+        for (LatencyHistogram h : histograms.values()) h.reset();
+    }
+
+    /** One line per stage: count, p50, p95, p99 and max (milliseconds for timings). */
+    @NonNull
+    public String report() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.US,
+                "%-12s %6s %9s %9s %9s %9s%n", "stage", "n", "p50", "p95", "p99", "max"));
+        for (Stage s : Stage.values()) {
+            LatencyHistogram h = histograms.get(s);
+            if (s.timing) {
+                sb.append(String.format(Locale.US, "%-12s %6d %9.1f %9.1f %9.1f %9.1f%n",
+                        s.name(), h.count(), ms(h.percentile(50)), ms(h.percentile(95)),
+                        ms(h.percentile(99)), ms(h.max())));
+            } else {
+                sb.append(String.format(Locale.US, "%-12s %6d %9d %9d %9d %9d%n",
+                        s.name(), h.count(), h.percentile(50), h.percentile(95),
+                        h.percentile(99), h.max()));
+            }
+        }
+        return sb.toString();
+    }
+
+    public void dumpToLog() {
+        dump.dumpToLog();
+    }
+
+    /** Overwrites {@code files/metrics/scan.txt}; returns the file, or null on I/O failure. */
+    @Nullable
+    public File dumpToFile(@NonNull Context context) {
+        return dump.dumpToFile(context);
+    }
+
+    public void dumpIfEnabled(@NonNull Context context) {
+        dump.dumpIfEnabled(context);
+    }
+
+    private static double ms(long micros) {
+        return micros / 1000d;
+    }
+}
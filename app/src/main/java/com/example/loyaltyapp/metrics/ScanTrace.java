@@ -0,0 +1,119 @@
+package com.example.loyaltyapp.metrics;
+
+import android.os.SystemClock;
+
+import com.example.loyaltyapp.metrics.ScanMetrics.Stage;
+
+/**
+ * Timestamps of one scan screen session, turned into {@link ScanMetrics} samples as the
+ * stages complete. Marks come from the main thread except {@link #frameDecoded(long)}
+ * (decoder thread) and {@link #attempt()} (transaction thread). A mark whose start was never
+ * set is ignored, so a resumed or aborted flow never records a bogus duration.
+ */
+public final class ScanTrace {
+
+    private static final long UNSET = -1L;
+
+    private final ScanMetrics metrics;
+
+    private long cameraStart = UNSET;
+    private volatile long previewStart = UNSET;
+    private volatile boolean firstFrameSeen;
+    private long found = UNSET;
+    // Read by attempt() on the transaction thread
+    private volatile long txStart = UNSET;
+    private volatile int attempts;
+    private boolean overlayShown;
+
+    public ScanTrace(ScanMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void cameraStarting() {
+        cameraStart = now();
+    }
+
+    public void previewStarted() {
+        long t = now();
+        if (cameraStart != UNSET) metrics.record(Stage.CAMERA_OPEN, micros(t - cameraStart));
+        cameraStart = UNSET;
+        firstFrameSeen = false;
+        previewStart = t;
+    }
+
+    /** @param decodeNanos time spent in the decoder for this frame */
+    public void frameDecoded(long decodeNanos) {
+        metrics.record(Stage.DECODE, micros(decodeNanos));
+        if (!firstFrameSeen && previewStart != UNSET) {
+            firstFrameSeen = true;
+            metrics.record(Stage.FIRST_FRAME, micros(now() - previewStart));
+        }
+    }
+
+    public void codeFound() {
+        found = now();
+        txStart = UNSET;
+        overlayShown = false;
+    }
+
+    /** The scanned text has been routed and the transaction is about to be requested. */
+    public void txRequested() {
+        long t = now();
+        if (found != UNSET) metrics.record(Stage.PROCESS, micros(t - found));
+        txStart = t;
+        attempts = 0;
+        metrics.setActiveTrace(this);
+    }
+
+    void attempt() {
+        if (attempts++ == 0 && txStart != UNSET) metrics.record(Stage.TX_START, micros(now() - txStart));
+    }
+
+    public void txCommitted() {
+        if (txStart == UNSET) return;
+        metrics.record(Stage.TX_COMMIT, micros(now() - txStart));
+        metrics.record(Stage.TX_RETRIES, Math.max(0, attempts - 1));
+        endTx();
+    }
+
+    /**
+     * The scan was saved to the offline queue, which syncs it later; a separate outcome, not
+     * a failure. Attempts of that later sync no longer count against this scan.
+     */
+    public void txDeferred() {
+        if (txStart == UNSET) return;
+        metrics.record(Stage.TX_DEFERRED, micros(now() - txStart));
+        endTx();
+    }
+
+    /** Failed or refused: nothing to time, but stop counting attempts. */
+    public void txAbandoned() {
+        endTx();
+    }
+
+    public void overlayShown() {
+        if (found == UNSET || overlayShown) return;
+        overlayShown = true;
+        metrics.record(Stage.OVERLAY, micros(now() - found));
+    }
+
+    /** The confirmed outcome is on screen; closes this scan. */
+    public void resultShown() {
+        if (found == UNSET) return;
+        metrics.record(Stage.TOTAL, micros(now() - found));
+        found = UNSET;
+    }
+
+    private void endTx() {
+        txStart = UNSET;
+        metrics.setActiveTrace(null);
+    }
+
+    private static long now() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1000L;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.loyaltyapp.metrics;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Named sections of app startup. Each section is a {@link Trace} slice, so it shows up in
+ * systrace/Perfetto and in the macrobenchmark traces, and is also timed into a
+ * {@link LatencyHistogram} for a local report. Sections nest; begin and end them on the
+ * main thread.
+ *
+ * <p>Dumping is opt-in, as for {@link ScanMetrics}:
+ * {@code adb shell setprop log.tag.StartupTrace DEBUG} makes {@link #dumpIfEnabled(Context)}
+ * log the table and write it to {@code files/metrics/startup.txt}.
+ */
+public final class StartupTrace {
+
+    private static final String TAG = "StartupTrace";
+
+    /** Process start until the first frame with a tab on screen; once per process. */
+    public static final String COLD_START = "Process.toFirstTab";
+
+    private static final class Open {
+        final String name;
+        final long startNanos;
+
+        Open(String name, long startNanos) {
+            this.name = name;
+            this.startNanos = startNanos;
+        }
+    }
+
+    private static StartupTrace instance;
+
+    // Insertion order, so the report reads in startup order
+    private final Map<String, LatencyHistogram> sections = new LinkedHashMap<>();
+    private final ArrayDeque<Open> open = new ArrayDeque<>();
+    private final MetricsDump dump = new MetricsDump(TAG, "startup.txt", this::report);
+    private boolean coldStartRecorded;
+
+    private StartupTrace() {}
+
+    public static synchronized StartupTrace get() {
+        if (instance == null) instance = new StartupTrace();
+        return instance;
+    }
+
+    /** Opens {@code name} (at most 127 characters, the {@link Trace} limit). */
+    public void begin(@NonNull String name) {
+        Trace.beginSection(name);
+        open.push(new Open(name, SystemClock.elapsedRealtimeNanos()));
+    }
+
+    /** Closes the innermost open section. */
+    public void end() {
+        Open o = open.poll();
+        if (o == null) return;
+        Trace.endSection();
+        record(o.name, (SystemClock.elapsedRealtimeNanos() - o.startNanos) / 1000L);
+    }
+
+    /**
+     * Records {@code name} from {@code sinceNanos} ({@link SystemClock#elapsedRealtimeNanos()})
+     * to the end of the next frame of {@code activity}, and the cold start on the first call of
+     * the process; then tells the system the activity is fully drawn.
+     */
+    public void markFirstFrame(@NonNull Activity activity, @NonNull String name, long sinceNanos) {
+        final View decor = activity.getWindow().getDecorView();
+        decor.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override public boolean onPreDraw() {
+                decor.getViewTreeObserver().removeOnPreDrawListener(this);
+                // Runs once the frame being prepared has been drawn
+                decor.post(() -> {
+                    long now = SystemClock.elapsedRealtimeNanos();
+                    record(name, (now - sinceNanos) / 1000L);
+                    if (!coldStartRecorded) {
+                        coldStartRecorded = true;
+                        record(COLD_START, (now / 1_000_000L - Process.getStartElapsedRealtime()) * 1000L);
+                    }
+                    if (!activity.isFinishing()) activity.reportFullyDrawn();
+                    dumpIfEnabled(activity);
+                });
+                return true;
+            }
+        });
+    }
+
+    @Nullable
+    public LatencyHistogram histogram(@NonNull String name) {
+        synchronized (sections) {
+            return sections.get(name);
+        }
+    }
+
+    public void reset() {
+        synchronized (sections) {
+            sections.clear();
+        }
+    }
+
+    /** One line per section: count, p50, p95, max and mean, in milliseconds. */
+    @NonNull
+    public String report() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.US,
+                "%-36s %5s %9s %9s %9s %9s%n", "section", "n", "p50", "p95", "max", "mean"));
+        synchronized (sections) {
+            for (Map.Entry<String, LatencyHistogram> e : sections.entrySet()) {
+                LatencyHistogram h = e.getValue();
+                sb.append(String.format(Locale.US, "%-36s %5d %9.1f %9.1f %9.1f %9.1f%n",
+                        e.getKey(), h.count(), ms(h.percentile(50)), ms(h.percentile(95)),
+                        ms(h.max()), h.mean() / 1000d));
+            }
+        }
+        return sb.toString();
+    }
+
+    public void dumpToLog() {
+        dump.dumpToLog();
+    }
+
+    /** Overwrites {@code files/metrics/startup.txt}; returns the file, or null on I/O failure. */
+    @Nullable
+    public File dumpToFile(@NonNull Context context) {
+        return dump.dumpToFile(context);
+    }
+
+    public void dumpIfEnabled(@NonNull Context context) {
+        dump.dumpIfEnabled(context);
+    }
+
+    private void record(String name, long micros) {
+        LatencyHistogram h;
+        synchronized (sections) {
+            h = sections.get(name);
+            if (h == null) {
+                h = new LatencyHistogram();
+                sections.put(name, h);
+            }
+        }
+        h.record(micros);
+    }
+
+    private static double ms(long micros) {
+        return micros / 1000d;
+    }
+}
@@ -1,8 +1,15 @@
 package com.example.loyaltyapp.models;
 
+import androidx.annotation.ColorInt;
+import androidx.annotation.DrawableRes;
+
+import com.example.loyaltyapp.R;
 import com.google.firebase.Timestamp;
 import com.google.firebase.firestore.DocumentSnapshot;
 
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
 public class ActivityEvent {
     public String id;
     public String type;       // "scan" | "redemption" | "bonus"
@@ -10,7 +17,23 @@ public class ActivityEvent {
     public String storeName;  // optional
     public Timestamp ts;
 
-    public static ActivityEvent fromDoc(DocumentSnapshot d) {
+    // Display fields, resolved once here so ActivityAdapter only assigns them when binding
+    public String title;
+    public String dateText;
+    public String pointsText;
+    @DrawableRes public int iconRes;
+    @DrawableRes public int iconBgRes;
+    @ColorInt public int pointsColor;
+
+    /**
+     * Row date format in the locale current right now. Not thread-safe and not cached across
+     * locale changes: build one per parse batch and pass it to {@link #fromDoc}.
+     */
+    public static SimpleDateFormat newDateFormat() {
+        return new SimpleDateFormat("EEE, dd MMM • HH:mm", Locale.getDefault());
+    }
+
+    public static ActivityEvent fromDoc(DocumentSnapshot d, SimpleDateFormat fmt) {
         try {
             ActivityEvent e = new ActivityEvent();
             e.id = d.getId();
@@ -19,11 +42,50 @@ public class ActivityEvent {
             e.points = p == null ? 0 : p.intValue();
             e.storeName = safeStr(d.getString("storeName"));
             e.ts = d.getTimestamp("ts");
+            e.prepareDisplay(fmt);
             return e;
         } catch (Exception ex) {
             return null;
         }
     }
 
+    private void prepareDisplay(SimpleDateFormat fmt) {
+        boolean redemption = "redemption".equals(type) || "redeem".equals(type);
+
+        // ---- Title
+        if ("scan".equals(type)) {
+            title = "Scan" + (!storeName.isEmpty() ? " — " + storeName : "");
+        } else if (redemption) {
+            title = "Redemption";
+        } else if ("bonus".equals(type)) {
+            title = "Bonus";
+        } else {
+            title = "Activity";
+        }
+
+        // ---- Date/time
+        dateText = ts != null ? fmt.format(ts.toDate()) : "—";
+
+        // ---- Points: redemptions always read negative even if stored positive
+        int displayPts = (redemption && points > 0) ? -points : points;
+        pointsText = (displayPts > 0 ? "+" : "") + displayPts; // negatives already include '-'
+
+        // ---- Icon + background + text color
+        if ("scan".equals(type) || "earn".equals(type)) {
+            iconRes = R.drawable.ic_scan;
+            iconBgRes = R.drawable.circle_background_earn;
+            pointsColor = 0xFF4CAF50; // green
+        } else if (redemption || "spend".equals(type)) {
+            iconRes = R.drawable.ic_gift;
+            iconBgRes = R.drawable.circle_background_spend;
+            pointsColor = 0xFFD32F2F; // red
+        } else {
+            // Bonus and anything unknown
+            iconRes = R.drawable.ic_star;
+            iconBgRes = R.drawable.circle_background_bonus;
+            pointsColor = 0xFFFFC107; // yellow
+        }
+    }
+
     private static String safeStr(String s) { return s == null ? "" : s; }
 }
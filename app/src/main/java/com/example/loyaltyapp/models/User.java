@@ -1,52 +1,99 @@
 package com.example.loyaltyapp.models;
 
-public class User {
-    private String uid;
-    private String email;
-    private String fullName;
-    private String birthday;
-    private String gender;
-    private int points;
-    private int visits;
-    private boolean isVerified;
-
-    // Required empty constructor for Firestore
-    public User() {}
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+/** Immutable snapshot of a users/{uid} document, shared by every screen. */
+public final class User {
+    private final String uid;
+    private final boolean exists;
+    private final String email;
+    private final String fullName;
+    private final String birthday;
+    private final String gender;
+    private final String phone;
+    private final String address;
+    private final int points;
+    private final int visits;
+    private final boolean isVerified;
+    private final String lastBirthdayReward;
+    @Nullable private final Timestamp lastVisitTimestamp;
 
     public User(String uid, String email, String fullName, String birthday, String gender,
                 int points, int visits, boolean isVerified) {
+        this(uid, true, email, fullName, birthday, gender, null, null,
+                points, visits, isVerified, null, null);
+    }
+
+    private User(String uid, boolean exists, String email, String fullName, String birthday,
+                 String gender, String phone, String address, int points, int visits,
+                 boolean isVerified, String lastBirthdayReward, @Nullable Timestamp lastVisitTimestamp) {
         this.uid = uid;
+        this.exists = exists;
         this.email = email;
         this.fullName = fullName;
         this.birthday = birthday;
         this.gender = gender;
+        this.phone = phone;
+        this.address = address;
         this.points = points;
         this.visits = visits;
         this.isVerified = isVerified;
+        this.lastBirthdayReward = lastBirthdayReward;
+        this.lastVisitTimestamp = lastVisitTimestamp;
     }
 
-    // Getters and setters
-    public String getUid() { return uid; }
-    public void setUid(String uid) { this.uid = uid; }
+    /** Builds a snapshot from Firestore; a missing document yields {@link #exists()} == false. */
+    @NonNull
+    public static User fromDoc(@NonNull DocumentSnapshot d) {
+        if (!d.exists()) {
+            return new User(d.getId(), false, null, null, null, null, null, null,
+                    0, 0, false, null, null);
+        }
+        Long p = d.getLong("points");
+        Long v = d.getLong("visits");
+        return new User(
+                d.getId(),
+                true,
+                d.getString("email"),
+                d.getString("fullName"),
+                d.getString("birthday"),
+                d.getString("gender"),
+                d.getString("phone"),
+                d.getString("address"),
+                p == null ? 0 : p.intValue(),
+                v == null ? 0 : v.intValue(),
+                Boolean.TRUE.equals(d.getBoolean("isVerified")),
+                d.getString("lastBirthdayReward"),
+                d.getTimestamp("lastVisitTimestamp"));
+    }
 
+    // Getters
+    public String getUid() { return uid; }
+    public boolean exists() { return exists; }
     public String getEmail() { return email; }
-    public void setEmail(String email) { this.email = email; }
-
     public String getFullName() { return fullName; }
-    public void setFullName(String fullName) { this.fullName = fullName; }
-
     public String getBirthday() { return birthday; }
-    public void setBirthday(String birthday) { this.birthday = birthday; }
-
     public String getGender() { return gender; }
-    public void setGender(String gender) { this.gender = gender; }
-
+    public String getPhone() { return phone; }
+    public String getAddress() { return address; }
     public int getPoints() { return points; }
-    public void setPoints(int points) { this.points = points; }
-
     public int getVisits() { return visits; }
-    public void setVisits(int visits) { this.visits = visits; }
-
     public boolean isVerified() { return isVerified; }
-    public void setVerified(boolean verified) { isVerified = verified; }
-}
\ No newline at end of file
+    public String getLastBirthdayReward() { return lastBirthdayReward; }
+    @Nullable public Timestamp getLastVisitTimestamp() { return lastVisitTimestamp; }
+
+    /** Same rule as the routing checks: name, birthday, gender set and the account verified. */
+    public boolean isProfileComplete() {
+        return exists
+                && !isBlank(fullName)
+                && !isBlank(birthday)
+                && !isBlank(gender)
+                && isVerified;
+    }
+
+    private static boolean isBlank(String s) { return s == null || s.trim().isEmpty(); }
+}
@@ -0,0 +1,47 @@
+package com.example.loyaltyapp.models;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+/**
+ * Immutable snapshot of users/{uid}/stats/aggregate, the running totals the points
+ * transactions maintain next to every earn, spend and redeem. Only the lifetime totals and
+ * the last activity are read; the per-month totals stay in the document for reporting.
+ */
+public final class UserStats {
+    private final boolean exists;
+    private final long lifetimeEarned;
+    private final long lifetimeSpent;
+    @Nullable private final Timestamp lastActivityTs;
+
+    private UserStats(boolean exists, long lifetimeEarned, long lifetimeSpent,
+                      @Nullable Timestamp lastActivityTs) {
+        this.exists = exists;
+        this.lifetimeEarned = lifetimeEarned;
+        this.lifetimeSpent = lifetimeSpent;
+        this.lastActivityTs = lastActivityTs;
+    }
+
+    /** A missing document (no activity since the counters were introduced) yields {@link #exists()} == false. */
+    @NonNull
+    public static UserStats fromDoc(@NonNull DocumentSnapshot d) {
+        if (!d.exists()) {
+            return new UserStats(false, 0, 0, null);
+        }
+        Long earned = d.getLong("lifetimeEarned");
+        Long spent = d.getLong("lifetimeSpent");
+        return new UserStats(
+                true,
+                earned == null ? 0 : earned,
+                spent == null ? 0 : spent,
+                d.getTimestamp("lastActivityTs"));
+    }
+
+    public boolean exists() { return exists; }
+    public long getLifetimeEarned() { return lifetimeEarned; }
+    public long getLifetimeSpent() { return lifetimeSpent; }
+    @Nullable public Timestamp getLastActivityTs() { return lastActivityTs; }
+}
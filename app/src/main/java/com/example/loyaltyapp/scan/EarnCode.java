@@ -0,0 +1,296 @@
+package com.example.loyaltyapp.scan;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+
+/**
+ * Signed compact earn code, printed by the till next to (or instead of) the bare
+ * /earn_codes document id:
+ *
+ * <pre>
+ *   E2.&lt;base64url, no padding&gt;
+ *
+ *   byte  0       version (2)
+ *   bytes 1-2     points, unsigned
+ *   bytes 3-6     createdAt, epoch seconds, unsigned
+ *   bytes 7-10    validForSec, unsigned
+ *   bytes 11..    earn_codes document id, UTF-8 (1-64 bytes)
+ *   last 64       ECDSA P-256 / SHA-256 signature over everything before, as r || s
+ * </pre>
+ *
+ * The till signs with a private key that never leaves it; the app only holds the public key,
+ * so nothing extracted from the APK can mint codes. Decoding checks the signature and the
+ * expiry without any I/O, so forged and stale codes never reach Firestore. It is a filter,
+ * not the authority: the transaction still validates the document. Without a key nothing
+ * can be verified, so {@link #decode} refuses every code; {@link #idOf} reads the document
+ * id for callers that then leave the verdict to the transaction.
+ */
+public final class EarnCode {
+
+    public static final String PREFIX = "E2.";
+
+    private static final int VERSION = 2;
+    private static final int HEADER = 11;
+    private static final int TAG = 64;
+    private static final int SCALAR = TAG / 2;
+    private static final String ALGORITHM = "SHA256withECDSA";
+    private static final int MAX_ID = 64;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public final String id;
+    public final int points;
+    public final long createdAtMillis;
+    public final long validForSec;
+
+    private EarnCode(String id, int points, long createdAtMillis, long validForSec) {
+        this.id = id;
+        this.points = points;
+        this.createdAtMillis = createdAtMillis;
+        this.validForSec = validForSec;
+    }
+
+    public long expiresAtMillis() {
+        return createdAtMillis + validForSec * 1000L;
+    }
+
+    /** Why a code was refused locally. */
+    public static final class Rejected extends Exception {
+        public enum Reason { MALFORMED, NO_KEY, BAD_SIGNATURE, EXPIRED }
+
+        public final Reason reason;
+
+        Rejected(Reason reason, String message) {
+            super(message);
+            this.reason = reason;
+        }
+    }
+
+    public static boolean isSigned(String text) {
+        return text.startsWith(PREFIX);
+    }
+
+    /**
+     * @param key the till's public key; when null every code is refused with
+     *            {@link Rejected.Reason#NO_KEY}
+     * @param nowMillis the scan time, compared with the code's expiry the same way the
+     *                  earn transaction does
+     */
+    public static EarnCode decode(String text, PublicKey key, long nowMillis) throws Rejected {
+        byte[] raw = unpack(text);
+        if (raw == null) throw new Rejected(Rejected.Reason.MALFORMED, "Invalid QR Code");
+        if (key == null) throw new Rejected(Rejected.Reason.NO_KEY, "Signed codes cannot be checked here");
+
+        if (!verify(key, raw, raw.length - TAG)) {
+            throw new Rejected(Rejected.Reason.BAD_SIGNATURE, "Invalid QR Code");
+        }
+
+        int points = u16(raw, 1);
+        long createdAtMillis = u32(raw, 3) * 1000L;
+        long validForSec = u32(raw, 7);
+        EarnCode code = new EarnCode(idOf(raw), points, createdAtMillis, validForSec);
+        if (nowMillis - createdAtMillis > validForSec * 1000L) {
+            throw new Rejected(Rejected.Reason.EXPIRED, "This code has expired");
+        }
+        return code;
+    }
+
+    /**
+     * The earn_codes document id inside {@code text}, with nothing checked; null when the code
+     * is malformed. The other fields are not returned: unverified, they must not be trusted.
+     */
+    public static String idOf(String text) {
+        byte[] raw = unpack(text);
+        return raw == null ? null : idOf(raw);
+    }
+
+    /** The decoded bytes when {@code text} has the layout of a signed code, else null. */
+    private static byte[] unpack(String text) {
+        if (!isSigned(text)) return null;
+        byte[] raw = Base64Url.decode(text, PREFIX.length(), text.length());
+        if (raw == null || raw.length < HEADER + 1 + TAG || raw.length > HEADER + MAX_ID + TAG
+                || (raw[0] & 0xFF) != VERSION) {
+            return null;
+        }
+        return raw;
+    }
+
+    private static String idOf(byte[] raw) {
+        return new String(raw, HEADER, raw.length - TAG - HEADER, UTF_8);
+    }
+
+    /** Inverse of {@link #decode}; what the till does with its private key. */
+    public static String encode(String id, int points, long createdAtSec, long validForSec, PrivateKey key) {
+        byte[] idBytes = id.getBytes(UTF_8);
+        if (idBytes.length == 0 || idBytes.length > MAX_ID) throw new IllegalArgumentException("id length");
+        if (points < 0 || points > 0xFFFF) throw new IllegalArgumentException("points");
+
+        byte[] raw = new byte[HEADER + idBytes.length + TAG];
+        raw[0] = VERSION;
+        putU16(raw, 1, points);
+        putU32(raw, 3, createdAtSec);
+        putU32(raw, 7, validForSec);
+        System.arraycopy(idBytes, 0, raw, HEADER, idBytes.length);
+        int signedLen = HEADER + idBytes.length;
+        try {
+            Signature signer = Signature.getInstance(ALGORITHM);
+            signer.initSign(key);
+            signer.update(raw, 0, signedLen);
+            if (!fromDer(signer.sign(), raw, signedLen)) throw new IllegalStateException("Unexpected signature");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " unavailable", e);
+        }
+        return PREFIX + Base64Url.encode(raw);
+    }
+
+    /**
+     * The X.509 (SubjectPublicKeyInfo) EC key as base64url, the form of
+     * {@code BuildConfig.EARN_CODE_PUBLIC_KEY}; null when empty or not a valid key.
+     */
+    public static PublicKey publicKey(String base64Url) {
+        if (base64Url == null || base64Url.isEmpty()) return null;
+        byte[] der = Base64Url.decode(base64Url, 0, base64Url.length());
+        if (der == null) return null;
+        try {
+            return KeyFactory.getInstance("EC").generatePublic(new X509EncodedKeySpec(der));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean verify(PublicKey key, byte[] raw, int signedLen) {
+        try {
+            Signature verifier = Signature.getInstance(ALGORITHM);
+            verifier.initVerify(key);
+            verifier.update(raw, 0, signedLen);
+            return verifier.verify(toDer(raw, signedLen));
+        } catch (GeneralSecurityException e) {
+            // Wrong key type or a signature the provider cannot parse: nothing was verified
+            return false;
+        }
+    }
+
+    // Signature encodings: codes carry r || s (fixed 64 bytes); java.security wants ASN.1 DER,
+    // SEQUENCE { INTEGER r, INTEGER s }. "SHA256withECDSAinP1363Format" is not on Android.
+
+    private static byte[] toDer(byte[] raw, int off) {
+        byte[] r = derInteger(raw, off);
+        byte[] s = derInteger(raw, off + SCALAR);
+        byte[] out = new byte[6 + r.length + s.length];
+        out[0] = 0x30;
+        out[1] = (byte) (4 + r.length + s.length); // at most 70: short form
+        out[2] = 0x02;
+        out[3] = (byte) r.length;
+        System.arraycopy(r, 0, out, 4, r.length);
+        out[4 + r.length] = 0x02;
+        out[5 + r.length] = (byte) s.length;
+        System.arraycopy(s, 0, out, 6 + r.length, s.length);
+        return out;
+    }
+
+    /** The unsigned scalar at {@code b[off, off + 32)} as a minimal two's complement integer. */
+    private static byte[] derInteger(byte[] b, int off) {
+        int i = off, end = off + SCALAR;
+        while (i < end - 1 && b[i] == 0) i++;
+        int pad = (b[i] & 0x80) != 0 ? 1 : 0;
+        byte[] out = new byte[end - i + pad];
+        System.arraycopy(b, i, out, pad, end - i);
+        return out;
+    }
+
+    /** Writes the DER signature as r || s at {@code out[off]}; false when it is not one. */
+    private static boolean fromDer(byte[] der, byte[] out, int off) {
+        if (der.length < 8 || der[0] != 0x30 || (der[1] & 0xFF) != der.length - 2) return false;
+        int p = 2;
+        for (int k = 0; k < 2; k++) {
+            if (der[p] != 0x02) return false;
+            int len = der[p + 1];
+            int from = p + 2;
+            p = from + len;
+            if (len <= 0 || p > der.length) return false;
+            while (len > SCALAR && der[from] == 0) { from++; len--; }
+            if (len > SCALAR) return false;
+            System.arraycopy(der, from, out, off + k * SCALAR + SCALAR - len, len);
+        }
+        return p == der.length;
+    }
+
+    private static int u16(byte[] b, int off) {
+        return ((b[off] & 0xFF) << 8) | (b[off + 1] & 0xFF);
+    }
+
+    private static long u32(byte[] b, int off) {
+        return ((long) (b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16)
+                | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+    }
+
+    private static void putU16(byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 8);
+        b[off + 1] = (byte) v;
+    }
+
+    private static void putU32(byte[] b, int off, long v) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+
+    /** RFC 4648 section 5 without padding; java.util.Base64 needs API 26 and android.util.Base64 is not on the JVM. */
+    static final class Base64Url {
+        private static final char[] ALPHABET =
+                "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+        private static final byte[] VALUES = new byte[128];
+
+        static {
+            Arrays.fill(VALUES, (byte) -1);
+            for (int i = 0; i < ALPHABET.length; i++) VALUES[ALPHABET[i]] = (byte) i;
+        }
+
+        private Base64Url() {}
+
+        static String encode(byte[] data) {
+            StringBuilder sb = new StringBuilder((data.length * 4 + 2) / 3);
+            int i = 0;
+            for (; i + 3 <= data.length; i += 3) {
+                int n = ((data[i] & 0xFF) << 16) | ((data[i + 1] & 0xFF) << 8) | (data[i + 2] & 0xFF);
+                sb.append(ALPHABET[n >>> 18]).append(ALPHABET[(n >>> 12) & 63])
+                  .append(ALPHABET[(n >>> 6) & 63]).append(ALPHABET[n & 63]);
+            }
+            int rest = data.length - i;
+            if (rest == 1) {
+                int n = (data[i] & 0xFF) << 16;
+                sb.append(ALPHABET[n >>> 18]).append(ALPHABET[(n >>> 12) & 63]);
+            } else if (rest == 2) {
+                int n = ((data[i] & 0xFF) << 16) | ((data[i + 1] & 0xFF) << 8);
+                sb.append(ALPHABET[n >>> 18]).append(ALPHABET[(n >>> 12) & 63]).append(ALPHABET[(n >>> 6) & 63]);
+            }
+            return sb.toString();
+        }
+
+        /** Decodes {@code s[from, to)}; null on any character outside the alphabet or a bad length. */
+        static byte[] decode(CharSequence s, int from, int to) {
+            int len = to - from;
+            if (len < 0 || len % 4 == 1) return null;
+            byte[] out = new byte[len * 3 / 4];
+            int bits = 0, acc = 0, o = 0;
+            for (int i = from; i < to; i++) {
+                char c = s.charAt(i);
+                int v = c < 128 ? VALUES[c] : -1;
+                if (v < 0) return null;
+                acc = (acc << 6) | v;
+                bits += 6;
+                if (bits >= 8) {
+                    bits -= 8;
+                    out[o++] = (byte) (acc >>> bits);
+                }
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.loyaltyapp.scan;
+
+import androidx.annotation.Nullable;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.journeyapps.barcodescanner.Decoder;
+import com.journeyapps.barcodescanner.DecoderFactory;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Builds QR-only {@link ThrottledDecoder}s. The barcode view asks for a new decoder every
+ * time the camera restarts, so the suspended state is kept here and handed to each one.
+ * Call from the main thread.
+ */
+public final class QrDecoderFactory implements DecoderFactory {
+
+    private final ScanDecodeConfig config;
+    @Nullable private ThrottledDecoder current;
+    @Nullable private ThrottledDecoder.FrameListener frameListener;
+    private boolean suspended;
+
+    public QrDecoderFactory(ScanDecodeConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public Decoder createDecoder(Map<DecodeHintType, ?> baseHints) {
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.putAll(baseHints);
+        // The only format the cashier prints; MultiFormatReader then runs just the QR reader
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, Collections.singletonList(BarcodeFormat.QR_CODE));
+        hints.put(DecodeHintType.CHARACTER_SET, "UTF-8");
+
+        MultiFormatReader reader = new MultiFormatReader();
+        reader.setHints(hints);
+        current = new ThrottledDecoder(reader, config, suspended, frameListener);
+        return current;
+    }
+
+    /** Applies to decoders created from now on, i.e. from the next camera start. */
+    public void setFrameListener(@Nullable ThrottledDecoder.FrameListener listener) {
+        frameListener = listener;
+    }
+
+    public void suspend() {
+        suspended = true;
+        if (current != null) current.suspend();
+    }
+
+    public void resume(long delayMs) {
+        suspended = false;
+        if (current != null) current.resume(delayMs);
+    }
+}
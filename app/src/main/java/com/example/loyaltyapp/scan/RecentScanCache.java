@@ -0,0 +1,81 @@
+package com.example.loyaltyapp.scan;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU of codes this device already handled, with the outcome to replay when the same
+ * code is scanned again. Entries expire per outcome: final answers are kept for minutes, an
+ * in-flight marker only long enough to swallow the rescans of one visit to the counter.
+ * Transient failures are never cached, so those codes always get another try.
+ * Thread-safe; process-wide through {@link #get()}.
+ */
+public final class RecentScanCache {
+
+    public enum Outcome { PENDING, SUCCESS, REJECTED }
+
+    public static final int DEFAULT_CAPACITY = 64;
+    static final long PENDING_TTL_MS = 30_000L;
+    static final long FINAL_TTL_MS = 10 * 60_000L;
+
+    public static final class Entry {
+        public final Outcome outcome;
+        /** Text shown the first time, shown again on a replay. */
+        public final String message;
+        final long expiresAt;
+
+        Entry(Outcome outcome, String message, long expiresAt) {
+            this.outcome = outcome;
+            this.message = message;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static RecentScanCache instance;
+
+    private final Map<String, Entry> entries;
+
+    public RecentScanCache(final int capacity) {
+        // Access order: a code that keeps being rescanned stays in
+        this.entries = new LinkedHashMap<String, Entry>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<String, RecentScanCache.Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public static synchronized RecentScanCache get() {
+        if (instance == null) instance = new RecentScanCache(DEFAULT_CAPACITY);
+        return instance;
+    }
+
+    /** Scoped to the signed-in user, so one account never replays another's answer. */
+    public static String key(String uid, ScanPayload.Type type, String codeId) {
+        return uid + '|' + type.name() + '|' + codeId;
+    }
+
+    /** @return the live entry for {@code key}, or null (expired entries are dropped). */
+    public synchronized Entry lookup(String key, long nowMillis) {
+        Entry e = entries.get(key);
+        if (e == null) return null;
+        if (nowMillis >= e.expiresAt) {
+            entries.remove(key);
+            return null;
+        }
+        return e;
+    }
+
+    public synchronized void put(String key, Outcome outcome, String message, long nowMillis) {
+        long ttl = outcome == Outcome.PENDING ? PENDING_TTL_MS : FINAL_TTL_MS;
+        entries.put(key, new Entry(outcome, message, nowMillis + ttl));
+    }
+
+    /** Forgets {@code key}, e.g. when a pending code failed for a transient reason. */
+    public synchronized void remove(String key) {
+        entries.remove(key);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
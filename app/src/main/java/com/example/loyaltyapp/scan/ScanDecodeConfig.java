@@ -0,0 +1,37 @@
+package com.example.loyaltyapp.scan;
+
+/**
+ * Tuning for the camera decode pipeline. The framing rectangle is also the crop handed to
+ * the decoder, so a larger margin means fewer pixels binarized per frame.
+ */
+public final class ScanDecodeConfig {
+
+    /** What the cashier QR codes need on a mid-range phone held at arm's length. */
+    public static final ScanDecodeConfig DEFAULT = new ScanDecodeConfig(0.2d, 40, 250, 30, 1500);
+
+    /** Fraction of the shorter preview side left out on each edge of the decoded square. */
+    public final double roiMarginFraction;
+    /** Shortest gap between two decodes, used while a code seems to be in view. */
+    public final long minIntervalMs;
+    /** Longest gap between two decodes, reached after a run of empty frames. */
+    public final long maxIntervalMs;
+    /** Added to the gap for every consecutive frame without any QR finder pattern. */
+    public final long backoffStepMs;
+    /** Quiet period after a successful scan before the decoder looks at frames again. */
+    public final long cooldownMs;
+
+    public ScanDecodeConfig(double roiMarginFraction, long minIntervalMs, long maxIntervalMs,
+                            long backoffStepMs, long cooldownMs) {
+        if (roiMarginFraction < 0d || roiMarginFraction >= 0.5d) {
+            throw new IllegalArgumentException("roiMarginFraction must be in [0, 0.5)");
+        }
+        if (minIntervalMs < 0 || maxIntervalMs < minIntervalMs) {
+            throw new IllegalArgumentException("need 0 <= minIntervalMs <= maxIntervalMs");
+        }
+        this.roiMarginFraction = roiMarginFraction;
+        this.minIntervalMs = minIntervalMs;
+        this.maxIntervalMs = maxIntervalMs;
+        this.backoffStepMs = Math.max(0, backoffStepMs);
+        this.cooldownMs = Math.max(0, cooldownMs);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.loyaltyapp.scan;
+
+/**
+ * Result of {@link ScanPayloadParser#parse}. Fields are kept as offsets into the scanned
+ * text and numbers as longs, so one instance can be refilled for every frame; strings are
+ * only built when {@link #text(int)} is called. Not thread-safe.
+ */
+public final class ScanPayload {
+
+    public enum Type {
+        /** Unusable; see {@link #error()}. */
+        INVALID,
+        /** Bare /earn_codes document id (field 0). */
+        EARN_ID,
+        /** {@link EarnCode} text, prefix included (field 0). */
+        SIGNED_EARN,
+        /** {@code REDEEM|codeId|userUid|costPoints}, see the {@code REDEEM_*} field indexes. */
+        REDEEM
+    }
+
+    public static final int REDEEM_CODE_ID = 0;
+    public static final int REDEEM_USER_UID = 1;
+    public static final int REDEEM_COST = 2;
+
+    static final int MAX_FIELDS = 4;
+
+    Type type = Type.INVALID;
+    String error;
+    CharSequence source;
+    int fieldCount;
+    final int[] start = new int[MAX_FIELDS];
+    final int[] end = new int[MAX_FIELDS];
+    final long[] number = new long[MAX_FIELDS];
+
+    void reset(CharSequence source) {
+        this.source = source;
+        type = Type.INVALID;
+        error = null;
+        fieldCount = 0;
+    }
+
+    void fail(String message) {
+        type = Type.INVALID;
+        error = message;
+        fieldCount = 0;
+    }
+
+    public Type type() {
+        return type;
+    }
+
+    public boolean ok() {
+        return type != Type.INVALID;
+    }
+
+    /** User-facing reason when {@link #type()} is {@link Type#INVALID}. */
+    public String error() {
+        return error;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    public int length(int field) {
+        check(field);
+        return end[field] - start[field];
+    }
+
+    /** Value of a numeric field; 0 for text fields. */
+    public long number(int field) {
+        check(field);
+        return number[field];
+    }
+
+    /** Allocates, unless the field spans the whole scanned String. */
+    public String text(int field) {
+        check(field);
+        int s = start[field], e = end[field];
+        if (s == 0 && e == source.length() && source instanceof String) return (String) source;
+        return source.subSequence(s, e).toString();
+    }
+
+    /** Compares a field with {@code other} without building a string. */
+    public boolean textEquals(int field, String other) {
+        check(field);
+        int s = start[field], len = end[field] - s;
+        if (other == null || other.length() != len) return false;
+        for (int i = 0; i < len; i++) {
+            if (source.charAt(s + i) != other.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private void check(int field) {
+        if (field < 0 || field >= fieldCount) {
+            throw new IndexOutOfBoundsException("field " + field + " of " + fieldCount);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.loyaltyapp.scan;
+
+/**
+ * Single-pass parser for everything the scan screen accepts. No regex, no split, no
+ * substrings: the text is walked once and the fields are written into a caller-owned
+ * {@link ScanPayload}.
+ *
+ * <p>A new payload type is one more entry in {@link #FORMATS}: a prefix, the type it maps
+ * to and the kinds of its '|'-separated fields. Text that matches no prefix is a bare earn
+ * code id.
+ */
+public final class ScanPayloadParser {
+
+    private static final char SEPARATOR = '|';
+
+    enum Kind { TEXT, UINT }
+
+    private static final class Format {
+        final String prefix;
+        final ScanPayload.Type type;
+        final String formatError;
+        final String numberError;
+        final Kind[] fields;
+
+        Format(String prefix, ScanPayload.Type type, String formatError, String numberError, Kind... fields) {
+            this.prefix = prefix;
+            this.type = type;
+            this.formatError = formatError;
+            this.numberError = numberError;
+            this.fields = fields;
+        }
+    }
+
+    private static final Format[] FORMATS = {
+            // From the cashier app; anything after costPoints is ignored, as it always was
+            new Format("REDEEM|", ScanPayload.Type.REDEEM,
+                    "Invalid redemption QR format", "Invalid points in QR code",
+                    Kind.TEXT, Kind.TEXT, Kind.UINT),
+    };
+
+    private ScanPayloadParser() {}
+
+    /** Fills {@code out} from {@code raw}; surrounding whitespace is ignored. @return {@code out.ok()} */
+    public static boolean parse(CharSequence raw, ScanPayload out) {
+        out.reset(raw);
+        int from = 0, to = raw.length();
+        while (from < to && raw.charAt(from) <= ' ') from++;
+        while (to > from && raw.charAt(to - 1) <= ' ') to--;
+        if (from == to) {
+            out.fail("Invalid QR Code");
+            return false;
+        }
+
+        for (Format f : FORMATS) {
+            if (startsWith(raw, from, to, f.prefix)) return parseFields(raw, from + f.prefix.length(), to, f, out);
+        }
+        if (startsWith(raw, from, to, EarnCode.PREFIX)) return single(raw, from, to, ScanPayload.Type.SIGNED_EARN, out);
+        return single(raw, from, to, ScanPayload.Type.EARN_ID, out);
+    }
+
+    private static boolean parseFields(CharSequence raw, int pos, int to, Format f, ScanPayload out) {
+        for (int i = 0; i < f.fields.length; i++) {
+            if (i > 0) {
+                if (pos >= to || raw.charAt(pos) != SEPARATOR) return fail(out, f.formatError);
+                pos++;
+            }
+            int start = pos;
+            long value = 0;
+            boolean numeric = f.fields[i] == Kind.UINT;
+            boolean badNumber = false;
+            for (; pos < to; pos++) {
+                char c = raw.charAt(pos);
+                if (c == SEPARATOR) break;
+                if (numeric) {
+                    if (c < '0' || c > '9' || value > (Integer.MAX_VALUE - (c - '0')) / 10) badNumber = true;
+                    else value = value * 10 + (c - '0');
+                }
+            }
+            if (pos == start) return fail(out, f.formatError);
+            if (badNumber) return fail(out, f.numberError);
+
+            out.start[i] = start;
+            out.end[i] = pos;
+            out.number[i] = numeric ? value : 0;
+        }
+        out.fieldCount = f.fields.length;
+        out.type = f.type;
+        return true;
+    }
+
+    /** Whole (trimmed) text as field 0; a '/' would turn a document id into a path. */
+    private static boolean single(CharSequence raw, int from, int to, ScanPayload.Type type, ScanPayload out) {
+        for (int i = from; i < to; i++) {
+            char c = raw.charAt(i);
+            if (c == '/' || c == SEPARATOR) return fail(out, "Invalid QR Code");
+        }
+        out.start[0] = from;
+        out.end[0] = to;
+        out.number[0] = 0;
+        out.fieldCount = 1;
+        out.type = type;
+        return true;
+    }
+
+    private static boolean startsWith(CharSequence raw, int from, int to, String prefix) {
+        int n = prefix.length();
+        if (to - from < n) return false;
+        for (int i = 0; i < n; i++) {
+            if (raw.charAt(from + i) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean fail(ScanPayload out, String message) {
+        out.fail(message);
+        return false;
+    }
+}
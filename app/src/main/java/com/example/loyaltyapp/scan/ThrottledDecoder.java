@@ -0,0 +1,99 @@
+package com.example.loyaltyapp.scan;
+
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.Reader;
+import com.google.zxing.Result;
+import com.journeyapps.barcodescanner.Decoder;
+
+/**
+ * Decoder that paces itself. The ZXing decoder thread asks the camera for the next preview
+ * frame only after {@link #decode(LuminanceSource)} returns, so waiting here throttles the
+ * whole pipeline; a frame that had to wait is dropped as stale and the next one, taken after
+ * the wait, is decoded instead.
+ *
+ * <p>The gap between decodes stays at {@link ScanDecodeConfig#minIntervalMs} while QR finder
+ * patterns are seen and grows by {@link ScanDecodeConfig#backoffStepMs} per empty frame up
+ * to {@link ScanDecodeConfig#maxIntervalMs}. While suspended no frame is decoded at all.
+ */
+public class ThrottledDecoder extends Decoder {
+
+    private static final long SUSPENDED_POLL_MS = 200;
+
+    /** Told about every frame that actually went through the reader. Runs on the decoder thread. */
+    public interface FrameListener {
+        void onFrameDecoded(long decodeNanos, boolean found);
+    }
+
+    private final ScanDecodeConfig config;
+    private final Object lock = new Object();
+    @Nullable private final FrameListener frameListener;
+
+    // Guarded by lock
+    private boolean suspended;
+    private long notBefore;
+    private long interval;
+
+    public ThrottledDecoder(Reader reader, ScanDecodeConfig config, boolean suspended,
+                            @Nullable FrameListener frameListener) {
+        super(reader);
+        this.config = config;
+        this.frameListener = frameListener;
+        this.suspended = suspended;
+        this.interval = config.minIntervalMs;
+    }
+
+    @Override
+    public Result decode(LuminanceSource source) {
+        if (!awaitTurn()) return null;
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        Result result = super.decode(source);
+        if (frameListener != null) {
+            frameListener.onFrameDecoded(SystemClock.elapsedRealtimeNanos() - start, result != null);
+        }
+        synchronized (lock) {
+            if (result != null || !getPossibleResultPoints().isEmpty()) {
+                interval = config.minIntervalMs;
+            } else {
+                interval = Math.min(config.maxIntervalMs, interval + config.backoffStepMs);
+            }
+            notBefore = SystemClock.elapsedRealtime() + interval;
+        }
+        return result;
+    }
+
+    /** Stops decoding until {@link #resume(long)}; frames keep being dropped meanwhile. */
+    public void suspend() {
+        synchronized (lock) {
+            suspended = true;
+        }
+    }
+
+    /** Decodes again after {@code delayMs}, starting from the shortest interval. */
+    public void resume(long delayMs) {
+        synchronized (lock) {
+            suspended = false;
+            interval = config.minIntervalMs;
+            notBefore = SystemClock.elapsedRealtime() + Math.max(0, delayMs);
+            lock.notifyAll();
+        }
+    }
+
+    /** @return true when this frame may be decoded; false when it was held back and is now stale. */
+    private boolean awaitTurn() {
+        synchronized (lock) {
+            long wait = suspended ? SUSPENDED_POLL_MS : notBefore - SystemClock.elapsedRealtime();
+            if (wait <= 0) return true;
+            try {
+                lock.wait(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+    }
+}
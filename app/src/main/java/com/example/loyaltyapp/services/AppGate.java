@@ -0,0 +1,130 @@
+package com.example.loyaltyapp.services;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.loyaltyapp.BlockedActivity;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process-wide owner of meta/app_status. One snapshot listener for the whole process, so
+ * moving between activities neither re-attaches it nor re-reads the document; the last
+ * known state is kept on disk and handed out synchronously, so a cold start can decide
+ * before the first server answer. The listener is detached once no screen observes the
+ * gate (the app is in the background) and attached again by the next {@link #observe}.
+ * Observe and remove observers on the main thread; all callbacks arrive there.
+ */
+public final class AppGate {
+
+    public interface Observer {
+        void onGate(boolean active, @Nullable String message);
+    }
+
+    private static final String PREFS = "app_gate";
+    private static final String KEY_ACTIVE = "isActive";
+    private static final String KEY_MESSAGE = "message";
+    private static final String TAG = "AppGate";
+    // Backoff for re-attaching after a listener error
+    private static final long RETRY_MIN_MS = 5_000L;
+    private static final long RETRY_MAX_MS = 5 * 60_000L;
+
+    private static AppGate instance;
+
+    public static synchronized AppGate get(@NonNull Context context) {
+        if (instance == null) instance = new AppGate(context.getApplicationContext());
+        return instance;
+    }
+
+    private final SharedPreferences prefs;
+    private final List<Observer> observers = new CopyOnWriteArrayList<>();
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final Runnable retry = this::ensureListening;
+    private ListenerRegistration registration;
+    private long retryDelayMs = RETRY_MIN_MS;
+    private boolean active;
+    @Nullable private String message;
+
+    private AppGate(Context app) {
+        prefs = app.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        // Open until the server says otherwise
+        active = prefs.getBoolean(KEY_ACTIVE, true);
+        message = prefs.getString(KEY_MESSAGE, null);
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /** Registers an observer; it gets the last known state immediately. */
+    public void observe(@NonNull Observer o) {
+        observers.add(o);
+        ensureListening();
+        o.onGate(active, message);
+    }
+
+    /** Unregisters an observer; the last one out detaches the listener. */
+    public void removeObserver(@NonNull Observer o) {
+        observers.remove(o);
+        if (observers.isEmpty()) stopListening();
+    }
+
+    /** What the app screens do when the gate closes. */
+    public static void showBlocked(@NonNull Activity activity, @Nullable String message) {
+        Intent i = new Intent(activity, BlockedActivity.class);
+        i.putExtra("reason", message);
+        activity.startActivity(i);
+        activity.finish();
+    }
+
+    private void ensureListening() {
+        main.removeCallbacks(retry);
+        if (registration != null || observers.isEmpty()) return;
+        registration = FirebaseFirestore.getInstance()
+                .collection("meta").document("app_status")
+                .addSnapshotListener((doc, err) -> {
+                    if (err != null) {
+                        // Firestore tears the listener down after an error; try again later
+                        Log.w(TAG, "app_status listener failed; retrying in " + retryDelayMs + " ms", err);
+                        registration = null;
+                        main.postDelayed(retry, retryDelayMs);
+                        retryDelayMs = Math.min(RETRY_MAX_MS, retryDelayMs * 2);
+                        return;
+                    }
+                    retryDelayMs = RETRY_MIN_MS;
+                    // A missing document closes the gate, but only once the server confirms it
+                    if (doc == null || (!doc.exists() && doc.getMetadata().isFromCache())) return;
+                    update(Boolean.TRUE.equals(doc.getBoolean("isActive")), doc.getString("message"));
+                });
+    }
+
+    private void stopListening() {
+        main.removeCallbacks(retry);
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+
+    private void update(boolean nowActive, @Nullable String nowMessage) {
+        boolean changed = nowActive != active
+                || (nowMessage == null ? message != null : !nowMessage.equals(message));
+        if (!changed) return;
+
+        active = nowActive;
+        message = nowMessage;
+        prefs.edit().putBoolean(KEY_ACTIVE, nowActive).putString(KEY_MESSAGE, nowMessage).apply();
+        for (Observer o : observers) o.onGate(nowActive, nowMessage);
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.loyaltyapp.services;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.loyaltyapp.ledger.LedgerCallback;
+import com.example.loyaltyapp.ledger.LedgerException;
+import com.example.loyaltyapp.ledger.LedgerStore;
+import com.example.loyaltyapp.ledger.LedgerTransaction;
+import com.example.loyaltyapp.ledger.LedgerValues;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Transaction;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs ledger transactions as Firestore transactions. Timestamps are handed to the engine
+ * as {@link java.util.Date} and ledger increments become {@link FieldValue#increment(long)}.
+ * Refusals come back as {@link FirebaseFirestoreException}s with the engine's message, so
+ * callers keep seeing the codes and texts they always did.
+ * Callbacks run on the main thread.
+ */
+public final class FirestoreLedgerStore implements LedgerStore {
+
+    private final FirebaseFirestore db;
+    @Nullable private final Runnable onAttempt;
+
+    /**
+     * @param onAttempt run at the start of every invocation of a transaction body, so
+     *                  callers can count the SDK's contention retries.
+     */
+    public FirestoreLedgerStore(@NonNull FirebaseFirestore db, @Nullable Runnable onAttempt) {
+        this.db = db;
+        this.onAttempt = onAttempt;
+    }
+
+    @Override
+    public <T> void run(Body<T> body, LedgerCallback<T> callback) {
+        db.runTransaction((Transaction.Function<T>) tx -> {
+            if (onAttempt != null) onAttempt.run();
+            try {
+                return body.apply(new Tx(tx));
+            } catch (LedgerException e) {
+                if (e.getCause() instanceof FirebaseFirestoreException) {
+                    throw (FirebaseFirestoreException) e.getCause();
+                }
+                throw new FirebaseFirestoreException(e.getMessage(), codeFor(e.getCode()), e);
+            }
+        }).addOnSuccessListener(callback::onSuccess)
+          .addOnFailureListener(callback::onFailure);
+    }
+
+    /**
+     * Refusals map to codes the SDK treats as final, so a used voucher or a short balance
+     * fails at once instead of re-running the body; ABORTED, FAILED_PRECONDITION and
+     * UNAVAILABLE would each be retried with backoff.
+     */
+    static FirebaseFirestoreException.Code codeFor(LedgerException.Code code) {
+        switch (code) {
+            case NOT_FOUND:
+            case NO_USER:             return FirebaseFirestoreException.Code.NOT_FOUND;
+            case INVALID:             return FirebaseFirestoreException.Code.DATA_LOSS;
+            case REJECTED:            return FirebaseFirestoreException.Code.INVALID_ARGUMENT;
+            case INSUFFICIENT_POINTS: return FirebaseFirestoreException.Code.OUT_OF_RANGE;
+            case PERMISSION_DENIED:   return FirebaseFirestoreException.Code.PERMISSION_DENIED;
+            case UNAVAILABLE:         return FirebaseFirestoreException.Code.UNAVAILABLE;
+            case ABORTED:
+            default:                  return FirebaseFirestoreException.Code.ABORTED;
+        }
+    }
+
+    private final class Tx implements LedgerTransaction {
+        private final Transaction tx;
+
+        Tx(Transaction tx) {
+            this.tx = tx;
+        }
+
+        @Override
+        public Map<String, Object> get(String path) throws LedgerException {
+            DocumentSnapshot snap;
+            try {
+                snap = tx.get(db.document(path));
+            } catch (FirebaseFirestoreException e) {
+                throw new LedgerException(LedgerException.Code.UNAVAILABLE, e.getMessage(), e);
+            }
+            if (!snap.exists() || snap.getData() == null) return null;
+
+            Map<String, Object> data = new HashMap<>(snap.getData());
+            for (Map.Entry<String, Object> e : data.entrySet()) {
+                if (e.getValue() instanceof Timestamp) e.setValue(((Timestamp) e.getValue()).toDate());
+            }
+            return data;
+        }
+
+        @Override
+        public void set(String path, Map<String, Object> data) {
+            tx.set(db.document(path), toFirestore(data));
+        }
+
+        @Override
+        public void update(String path, Map<String, Object> fields) {
+            tx.update(db.document(path), toFirestore(fields));
+        }
+
+        @Override
+        public void merge(String path, Map<String, Object> data) {
+            tx.set(db.document(path), toFirestore(data), SetOptions.merge());
+        }
+
+        @Override
+        public String newId(String collectionPath) {
+            return db.collection(collectionPath).document().getId();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> toFirestore(Map<String, Object> data) {
+        Map<String, Object> out = new HashMap<>(data.size());
+        for (Map.Entry<String, Object> e : data.entrySet()) {
+            Object v = e.getValue();
+            if (v == LedgerValues.SERVER_TIME) v = FieldValue.serverTimestamp();
+            else if (v instanceof LedgerValues.Increment) v = FieldValue.increment(((LedgerValues.Increment) v).amount);
+            else if (v instanceof Map) v = toFirestore((Map<String, Object>) v);
+            out.put(e.getKey(), v);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.loyaltyapp.services;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.loyaltyapp.data.UserProfileRepository;
+import com.example.loyaltyapp.ledger.BatchResult;
+import com.example.loyaltyapp.ledger.EarnResult;
+import com.example.loyaltyapp.ledger.LedgerCallback;
+import com.example.loyaltyapp.ledger.LedgerException;
+import com.example.loyaltyapp.ledger.LedgerOp;
+import com.example.loyaltyapp.ledger.LoyaltyTransactionService;
+import com.example.loyaltyapp.ledger.SpendResult;
+import com.example.loyaltyapp.metrics.ScanMetrics;
+import com.example.loyaltyapp.models.User;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.FirebaseNetworkException;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Task-based entry points to the points engine ({@link LoyaltyTransactionService}) on
+ * Firestore: earning from a voucher, spending with a cashier redeem code, and redeeming a
+ * catalog reward. Shared by the screens, the background scan sync and the emulator
+ * benchmarks so all of them run the same transaction bodies.
+ */
+public final class PointsTransactions {
+
+    private static LoyaltyTransactionService service;
+    private static LoyaltyTransactionService scanService;
+
+    private PointsTransactions() {}
+
+    /** Redeems and the birthday bonus, which are not part of any scan. */
+    private static synchronized LoyaltyTransactionService service() {
+        if (service == null) service = service(FirebaseFirestore.getInstance(), null);
+        return service;
+    }
+
+    /** Earns, spends and batches, started by a scan: their retries count against it in {@link ScanMetrics}. */
+    private static synchronized LoyaltyTransactionService scanService() {
+        if (scanService == null) {
+            scanService = service(FirebaseFirestore.getInstance(), ScanMetrics.get()::onTransactionAttempt);
+        }
+        return scanService;
+    }
+
+    static LoyaltyTransactionService service(@NonNull FirebaseFirestore db, @Nullable Runnable onAttempt) {
+        return new LoyaltyTransactionService(new FirestoreLedgerStore(db, onAttempt),
+                LoyaltyTransactionService.SYSTEM_CLOCK, PointsTransactions::lastVisitHint);
+    }
+
+    /** Last visit from the live profile snapshot, so earns inside the visit window skip the user read. */
+    @Nullable
+    private static Date lastVisitHint(String uid) {
+        User u = UserProfileRepository.get().getCurrent();
+        if (u == null || !uid.equals(u.getUid()) || u.getLastVisitTimestamp() == null) return null;
+        return u.getLastVisitTimestamp().toDate();
+    }
+
+    /**
+     * Redeems /earn_codes/{voucherId} for {@code uid}, see {@link LoyaltyTransactionService#earn}.
+     *
+     * @param scannedAtMillis when the code was scanned; expiry is checked against this, not
+     *                        against the time the queued scan finally reaches the server.
+     * @param replay          true when an earlier attempt of this scan may have committed;
+     *                        a voucher it already redeemed then resolves as success.
+     */
+    public static Task<EarnResult> earn(@NonNull String uid, @NonNull String voucherId, long scannedAtMillis,
+                                        boolean replay) {
+        return earn(scanService(), uid, voucherId, scannedAtMillis, replay);
+    }
+
+    static Task<EarnResult> earn(@NonNull LoyaltyTransactionService svc, @NonNull String uid,
+                                 @NonNull String voucherId, long scannedAtMillis, boolean replay) {
+        TaskCompletionSource<EarnResult> tcs = new TaskCompletionSource<>();
+        svc.earn(uid, voucherId, scannedAtMillis, replay, complete(tcs));
+        return tcs.getTask();
+    }
+
+    /**
+     * Spends points with a cashier-generated /redeem_codes/{redeemDocId} that targets {@code uid}.
+     *
+     * @param fallbackCost cost carried in the QR, used only when the code has no costPoints.
+     */
+    public static Task<SpendResult> spend(@NonNull String uid, @NonNull String redeemDocId, int fallbackCost) {
+        return spend(scanService(), uid, redeemDocId, fallbackCost);
+    }
+
+    static Task<SpendResult> spend(@NonNull LoyaltyTransactionService svc, @NonNull String uid,
+                                   @NonNull String redeemDocId, int fallbackCost) {
+        TaskCompletionSource<SpendResult> tcs = new TaskCompletionSource<>();
+        svc.spend(uid, redeemDocId, fallbackCost, complete(tcs));
+        return tcs.getTask();
+    }
+
+    /** Redeems catalog reward /Rewards/{rewardId} for {@code uid}. */
+    public static Task<SpendResult> redeem(@NonNull String uid, @NonNull String rewardId) {
+        return redeem(service(), uid, rewardId);
+    }
+
+    static Task<SpendResult> redeem(@NonNull LoyaltyTransactionService svc, @NonNull String uid,
+                                    @NonNull String rewardId) {
+        TaskCompletionSource<SpendResult> tcs = new TaskCompletionSource<>();
+        svc.redeem(uid, rewardId, complete(tcs));
+        return tcs.getTask();
+    }
+
+    /**
+     * Grants the birthday bonus for {@code dayKey} (yyyy-MM-dd) in one transaction with a
+     * server-side increment; resolves to false when it was already granted that day.
+     */
+    public static Task<Boolean> birthdayBonus(@NonNull String uid, @NonNull String dayKey) {
+        TaskCompletionSource<Boolean> tcs = new TaskCompletionSource<>();
+        service().birthdayBonus(uid, dayKey, complete(tcs));
+        return tcs.getTask();
+    }
+
+    /** Applies several operations for {@code uid} in as few transactions as possible. */
+    public static Task<BatchResult> batch(@NonNull String uid, @NonNull List<LedgerOp> ops) {
+        TaskCompletionSource<BatchResult> tcs = new TaskCompletionSource<>();
+        scanService().batch(uid, ops, complete(tcs));
+        return tcs.getTask();
+    }
+
+    private static <T> LedgerCallback<T> complete(final TaskCompletionSource<T> tcs) {
+        return new LedgerCallback<T>() {
+            @Override public void onSuccess(T result) { tcs.setResult(result); }
+            @Override public void onFailure(Exception e) { tcs.setException(e); }
+        };
+    }
+
+    /**
+     * True when the engine refused the code itself for good: unknown, malformed, used, expired
+     * or another account's. Only such answers may be replayed for a rescan; a refusal that
+     * depends on the balance or the user document, or a failed transaction, may change.
+     */
+    public static boolean isFinalRefusal(@NonNull Exception e) {
+        Throwable t = e;
+        while (t != null && !(t instanceof LedgerException)) t = t.getCause() == t ? null : t.getCause();
+        if (t == null) return false;
+        switch (((LedgerException) t).getCode()) {
+            case NOT_FOUND:
+            case INVALID:
+            case REJECTED:
+            case PERMISSION_DENIED:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** True when the failure is about connectivity rather than the voucher, so a retry may succeed. */
+    public static boolean isTransient(@NonNull Exception e) {
+        if (e instanceof FirebaseNetworkException) return true;
+        if (e instanceof FirebaseFirestoreException) {
+            FirebaseFirestoreException.Code code = ((FirebaseFirestoreException) e).getCode();
+            return code == FirebaseFirestoreException.Code.UNAVAILABLE
+                    || code == FirebaseFirestoreException.Code.DEADLINE_EXCEEDED
+                    || code == FirebaseFirestoreException.Code.RESOURCE_EXHAUSTED
+                    || code == FirebaseFirestoreException.Code.INTERNAL;
+        }
+        return e.getCause() instanceof Exception && e.getCause() != e && isTransient((Exception) e.getCause());
+    }
+}
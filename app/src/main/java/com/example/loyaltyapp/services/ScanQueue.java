@@ -0,0 +1,182 @@
+package com.example.loyaltyapp.services;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+
+import com.example.loyaltyapp.ledger.EarnResult;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable queue of scanned earn codes, keyed by voucher ID.
+ * A scan is written to disk before any network call so the UI can answer immediately;
+ * {@link ScanSyncWorker} replays whatever is left once the device is back online.
+ */
+public final class ScanQueue {
+
+    private static final String TAG = "ScanQueue";
+    private static final String FILE_NAME = "scan_queue.tsv";
+    private static final String WORK_NAME = "scan_sync";
+
+    public interface Callback {
+        /** Points were credited (now or by an earlier replay). */
+        void onSynced(@NonNull EarnResult result);
+        /** The server refused the voucher (expired, used, unknown); it has been dropped. */
+        void onRejected(@NonNull Exception e);
+        /** No connectivity; the scan stays queued and will sync in the background. */
+        void onDeferred();
+    }
+
+    public static final class Entry {
+        public final String voucherId;
+        public final String uid;
+        public final long scannedAt;
+
+        Entry(String voucherId, String uid, long scannedAt) {
+            this.voucherId = voucherId;
+            this.uid = uid;
+            this.scannedAt = scannedAt;
+        }
+    }
+
+    private static ScanQueue instance;
+
+    public static synchronized ScanQueue get(@NonNull Context context) {
+        if (instance == null) instance = new ScanQueue(context.getApplicationContext());
+        return instance;
+    }
+
+    private final Context appContext;
+    private final File file;
+    private final Map<String, Entry> pending = new LinkedHashMap<>();
+
+    private ScanQueue(Context appContext) {
+        this.appContext = appContext;
+        this.file = new File(appContext.getFilesDir(), FILE_NAME);
+        load();
+    }
+
+    /**
+     * Persists a fresh scan and tries to sync it right away.
+     *
+     * @return false if this voucher is already waiting in the queue (nothing is done).
+     */
+    public boolean submit(@NonNull String uid, @NonNull String voucherId, @NonNull Callback callback) {
+        return submit(uid, voucherId, false, callback);
+    }
+
+    /**
+     * As {@link #submit(String, String, Callback)}; {@code replay} marks a scan that was
+     * already sent once with an unknown outcome, so a voucher that attempt redeemed for
+     * {@code uid} syncs as success instead of being rejected.
+     */
+    public boolean submit(@NonNull String uid, @NonNull String voucherId, boolean replay,
+                          @NonNull Callback callback) {
+        Entry e;
+        synchronized (this) {
+            if (pending.containsKey(voucherId)) return false;
+            e = new Entry(voucherId, uid, System.currentTimeMillis());
+            pending.put(voucherId, e);
+            save();
+        }
+
+        PointsTransactions.earn(e.uid, e.voucherId, e.scannedAt, replay)
+                .addOnSuccessListener(result -> {
+                    remove(e.voucherId);
+                    callback.onSynced(result);
+                })
+                .addOnFailureListener(err -> {
+                    if (PointsTransactions.isTransient(err)) {
+                        scheduleSync();
+                        callback.onDeferred();
+                    } else {
+                        remove(e.voucherId);
+                        callback.onRejected(err);
+                    }
+                });
+        return true;
+    }
+
+    public synchronized List<Entry> snapshot() {
+        return new ArrayList<>(pending.values());
+    }
+
+    public synchronized boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    synchronized void remove(@NonNull String voucherId) {
+        if (pending.remove(voucherId) != null) save();
+    }
+
+    /** Enqueues the background replay; it only runs with a network connection. */
+    public void scheduleSync() {
+        OneTimeWorkRequest req = new OneTimeWorkRequest.Builder(ScanSyncWorker.class)
+                .setConstraints(new Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.CONNECTED)
+                        .build())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 30, TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance(appContext)
+                .enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.KEEP, req);
+    }
+
+    // -------------- PERSISTENCE --------------
+    // One line per scan: voucherId \t uid \t scannedAtMillis
+
+    private void load() {
+        if (!file.exists()) return;
+        try (BufferedReader r = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                String[] f = line.split("\t");
+                if (f.length < 3) continue;
+                try {
+                    pending.put(f[0], new Entry(f[0], f[1], Long.parseLong(f[2])));
+                } catch (NumberFormatException ignored) {}
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read scan queue", e);
+        }
+    }
+
+    private void save() {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            for (Entry e : pending.values()) {
+                w.write(e.voucherId);
+                w.write('\t');
+                w.write(e.uid);
+                w.write('\t');
+                w.write(Long.toString(e.scannedAt));
+                w.write('\n');
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write scan queue", e);
+            return;
+        }
+        if (!tmp.renameTo(file)) Log.e(TAG, "Failed to replace scan queue file");
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.loyaltyapp.services;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.google.android.gms.tasks.Tasks;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/** Replays queued earn scans with the same transaction the scan screen uses. */
+public class ScanSyncWorker extends Worker {
+
+    private static final String TAG = "ScanSyncWorker";
+    private static final long TX_TIMEOUT_SEC = 30;
+
+    public ScanSyncWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        ScanQueue queue = ScanQueue.get(getApplicationContext());
+        boolean retry = false;
+
+        for (ScanQueue.Entry e : queue.snapshot()) {
+            try {
+                // Any earlier attempt may have committed before the connection dropped
+                Tasks.await(PointsTransactions.earn(e.uid, e.voucherId, e.scannedAt, true),
+                        TX_TIMEOUT_SEC, TimeUnit.SECONDS);
+                queue.remove(e.voucherId);
+            } catch (ExecutionException ex) {
+                Exception cause = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+                if (PointsTransactions.isTransient(cause)) {
+                    retry = true;
+                } else {
+                    Log.w(TAG, "Dropping rejected voucher " + e.voucherId + ": " + cause.getMessage());
+                    queue.remove(e.voucherId);
+                }
+            } catch (TimeoutException ex) {
+                retry = true;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return Result.retry();
+            }
+        }
+        return retry ? Result.retry() : Result.success();
+    }
+}
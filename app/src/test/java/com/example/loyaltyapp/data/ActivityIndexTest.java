@@ -0,0 +1,87 @@
+package com.example.loyaltyapp.data;
+
+import com.example.loyaltyapp.models.ActivityEvent;
+import com.google.firebase.Timestamp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ActivityIndexTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final long T0 = 1_700_000_000_000L;
+
+    private final ActivityIndex index = new ActivityIndex();
+
+    @Before
+    public void setUp() {
+        // Deliberately out of order, with two events missing their timestamp
+        index.rebuild(Arrays.asList(
+                event("s1", "scan", T0),
+                event("r1", "redemption", T0 + 2 * DAY),
+                event("n1", "scan", null),
+                event("s2", "scan", T0 + 3 * DAY),
+                event("b1", "bonus", T0 + DAY),
+                event("n2", "bonus", null)));
+    }
+
+    @Test
+    public void unboundedQueryReturnsEverythingNewestFirst() {
+        assertEquals(Arrays.asList("s2", "r1", "b1", "s1", "n1", "n2"),
+                ids(ActivityIndex.ALL, Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(Arrays.asList("s2", "s1", "n1"), ids("scan", Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void boundsAreInclusive() {
+        assertEquals(Arrays.asList("r1", "b1"), ids(ActivityIndex.ALL, T0 + DAY, T0 + 2 * DAY));
+        assertEquals(Arrays.asList("b1"), ids(ActivityIndex.ALL, T0 + DAY, T0 + DAY));
+    }
+
+    @Test
+    public void eventsWithoutTimestampNeverMatchABoundedRange() {
+        assertEquals(Arrays.asList("s2", "r1", "b1", "s1"), ids(ActivityIndex.ALL, T0, Long.MAX_VALUE));
+        assertEquals(Arrays.asList("b1", "s1"), ids(ActivityIndex.ALL, Long.MIN_VALUE, T0 + DAY));
+        assertEquals(Arrays.asList("s1"), ids("scan", Long.MIN_VALUE, T0 + DAY));
+        assertEquals(Arrays.<String>asList(), ids("bonus", Long.MIN_VALUE, T0));
+    }
+
+    @Test
+    public void typeFilterAndEmptyRanges() {
+        assertEquals(Arrays.asList("b1", "n2"), ids("bonus", Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(Arrays.<String>asList(), ids("unknown", Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(Arrays.<String>asList(), ids(ActivityIndex.ALL, T0 + 4 * DAY, Long.MAX_VALUE));
+        assertEquals(Arrays.<String>asList(), ids(ActivityIndex.ALL, T0 - DAY, T0 - 1));
+    }
+
+    @Test
+    public void rebuildReplacesTheIndex() {
+        index.rebuild(Arrays.asList(event("x", "scan", T0)));
+
+        assertEquals(Arrays.asList("x"), ids(ActivityIndex.ALL, Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(Arrays.<String>asList(), ids("bonus", Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    private List<String> ids(String type, long from, long to) {
+        List<ActivityEvent> out = new ArrayList<>();
+        index.query(type, from, to, out);
+        List<String> ids = new ArrayList<>(out.size());
+        for (ActivityEvent e : out) ids.add(e.id);
+        return ids;
+    }
+
+    private static ActivityEvent event(String id, String type, Long millis) {
+        ActivityEvent e = new ActivityEvent();
+        e.id = id;
+        e.type = type;
+        e.ts = millis == null ? null : new Timestamp(new Date(millis));
+        return e;
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.loyaltyapp.ledger;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link LedgerStore} over a map, for JVM tests. Transactions are optimistic like Firestore's:
+ * reads record document versions, the commit re-checks them under a lock and the body is
+ * re-run (up to {@link #MAX_ATTEMPTS} times) when another commit got there first. Callbacks
+ * run on the calling thread.
+ */
+public final class InMemoryLedgerStore implements LedgerStore {
+
+    public static final int MAX_ATTEMPTS = 5;
+
+    private static final class Doc {
+        final Map<String, Object> data;
+        final long version;
+
+        Doc(Map<String, Object> data, long version) {
+            this.data = data;
+            this.version = version;
+        }
+    }
+
+    // Guarded by this
+    private final Map<String, Doc> docs = new HashMap<>();
+    private long nextVersion = 1;
+
+    private final AtomicInteger attempts = new AtomicInteger();
+    private final AtomicInteger ids = new AtomicInteger();
+
+    /** Writes a document directly, outside any transaction. */
+    public synchronized void put(String path, Map<String, Object> data) {
+        docs.put(path, new Doc(new HashMap<>(data), nextVersion++));
+    }
+
+    /** @return a copy of the document, or null. */
+    public synchronized Map<String, Object> get(String path) {
+        Doc d = docs.get(path);
+        return d == null ? null : new HashMap<>(d.data);
+    }
+
+    /** Paths of the documents directly under {@code collectionPath}. */
+    public synchronized List<String> list(String collectionPath) {
+        String prefix = collectionPath + "/";
+        List<String> out = new ArrayList<>();
+        for (String path : docs.keySet()) {
+            if (path.startsWith(prefix) && path.indexOf('/', prefix.length()) < 0) out.add(path);
+        }
+        return out;
+    }
+
+    /** Transaction bodies run so far, retries included. */
+    public int attempts() {
+        return attempts.get();
+    }
+
+    @Override
+    public <T> void run(Body<T> body, LedgerCallback<T> callback) {
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            attempts.incrementAndGet();
+            Tx tx = new Tx();
+            T result;
+            try {
+                result = body.apply(tx);
+                if (!commit(tx)) continue;
+            } catch (LedgerException e) {
+                callback.onFailure(e);
+                return;
+            }
+            callback.onSuccess(result);
+            return;
+        }
+        callback.onFailure(new LedgerException(LedgerException.Code.ABORTED,
+                "Transaction aborted after " + MAX_ATTEMPTS + " attempts"));
+    }
+
+    /** @return false when a document read by {@code tx} changed since; the body must re-run. */
+    private synchronized boolean commit(Tx tx) throws LedgerException {
+        for (Map.Entry<String, Long> r : tx.readVersions.entrySet()) {
+            Doc d = docs.get(r.getKey());
+            long current = d == null ? 0L : d.version;
+            if (current != r.getValue()) return false;
+        }
+
+        // Validate before applying anything so a failed commit leaves no partial writes
+        for (Write w : tx.writes) {
+            if (w.mode == Write.UPDATE && docs.get(w.path) == null && !tx.createdEarlier(w)) {
+                throw new LedgerException(LedgerException.Code.NOT_FOUND, "No document to update: " + w.path);
+            }
+        }
+
+        Date now = new Date();
+        for (Write w : tx.writes) {
+            Doc old = docs.get(w.path);
+            Map<String, Object> data = w.mode == Write.SET || old == null
+                    ? new HashMap<String, Object>() : new HashMap<>(old.data);
+            apply(data, w.data, w.mode == Write.MERGE, now);
+            docs.put(w.path, new Doc(data, nextVersion++));
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void apply(Map<String, Object> target, Map<String, Object> fields, boolean deep, Date now) {
+        for (Map.Entry<String, Object> e : fields.entrySet()) {
+            Object v = e.getValue();
+            Object cur = target.get(e.getKey());
+            if (v == LedgerValues.SERVER_TIME) {
+                v = now;
+            } else if (v instanceof LedgerValues.Increment) {
+                long base = cur instanceof Number ? ((Number) cur).longValue() : 0L;
+                v = base + ((LedgerValues.Increment) v).amount;
+            } else if (deep && v instanceof Map) {
+                Map<String, Object> nested = cur instanceof Map
+                        ? new HashMap<>((Map<String, Object>) cur) : new HashMap<String, Object>();
+                apply(nested, (Map<String, Object>) v, true, now);
+                v = nested;
+            }
+            target.put(e.getKey(), v);
+        }
+    }
+
+    private static final class Write {
+        static final int SET = 0, UPDATE = 1, MERGE = 2;
+
+        final String path;
+        final Map<String, Object> data;
+        final int mode;
+
+        Write(String path, Map<String, Object> data, int mode) {
+            this.path = path;
+            this.data = new HashMap<>(data);
+            this.mode = mode;
+        }
+    }
+
+    private final class Tx implements LedgerTransaction {
+        final Map<String, Long> readVersions = new HashMap<>();
+        final List<Write> writes = new ArrayList<>();
+
+        @Override
+        public Map<String, Object> get(String path) {
+            if (!writes.isEmpty()) {
+                throw new IllegalStateException("Transactions require all reads to be executed before all writes");
+            }
+            synchronized (InMemoryLedgerStore.this) {
+                Doc d = docs.get(path);
+                readVersions.put(path, d == null ? 0L : d.version);
+                return d == null ? null : new HashMap<>(d.data);
+            }
+        }
+
+        @Override
+        public void set(String path, Map<String, Object> data) {
+            writes.add(new Write(path, data, Write.SET));
+        }
+
+        @Override
+        public void update(String path, Map<String, Object> fields) {
+            writes.add(new Write(path, fields, Write.UPDATE));
+        }
+
+        @Override
+        public void merge(String path, Map<String, Object> data) {
+            writes.add(new Write(path, data, Write.MERGE));
+        }
+
+        @Override
+        public String newId(String collectionPath) {
+            return "auto" + ids.incrementAndGet();
+        }
+
+        boolean createdEarlier(Write w) {
+            for (Write x : writes) {
+                if (x == w) return false;
+                if (x.mode != Write.UPDATE && x.path.equals(w.path)) return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package com.example.loyaltyapp.ledger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** Runs the points engine on {@link InMemoryLedgerStore}; no emulator or device needed. */
+public class LoyaltyTransactionServiceTest {
+
+    private static final String UID = "u1";
+    private static final long NOW = 1_700_000_000_000L;
+
+    private InMemoryLedgerStore store;
+    private LoyaltyTransactionService service;
+
+    @Before
+    public void setUp() {
+        store = new InMemoryLedgerStore();
+        service = new LoyaltyTransactionService(store, () -> NOW);
+
+        Map<String, Object> user = new HashMap<>();
+        user.put("points", 100L);
+        user.put("visits", 3L);
+        store.put("users/" + UID, user);
+    }
+
+    @Test
+    public void earn_creditsPointsCountsVisitAndLogsActivity() {
+        voucher("v1", 20, "pending", NOW - 1000);
+
+        EarnResult r = earn("v1");
+
+        assertEquals(20, r.points);
+        assertTrue(r.visitCounted);
+        Map<String, Object> user = store.get("users/" + UID);
+        assertEquals(120L, user.get("points"));
+        assertEquals(4L, user.get("visits"));
+        assertEquals("redeemed", store.get("earn_codes/v1").get("status"));
+
+        Map<String, Object> log = store.get("users/" + UID + "/activities/earn_v1");
+        assertEquals("earn", log.get("type"));
+        assertEquals(20, log.get("points"));
+    }
+
+    @Test
+    public void earn_replayBySameUserSucceedsWithoutWriting() {
+        voucher("v1", 20, "pending", NOW);
+        earn("v1");
+
+        Probe<EarnResult> p = new Probe<>();
+        service.earn(UID, "v1", NOW, true, p);
+        EarnResult again = p.result();
+
+        assertEquals(20, again.points);
+        assertFalse(again.visitCounted);
+        assertEquals(120L, store.get("users/" + UID).get("points"));
+    }
+
+    @Test
+    public void earn_rescanBySameUserIsRefused() {
+        voucher("v1", 20, "pending", NOW);
+        earn("v1");
+
+        Probe<EarnResult> p = new Probe<>();
+        service.earn(UID, "v1", NOW, false, p);
+
+        assertEquals(LedgerException.Code.REJECTED, p.error().getCode());
+        assertEquals("Voucher is redeemed", p.error().getMessage());
+        assertEquals(120L, store.get("users/" + UID).get("points"));
+    }
+
+    @Test
+    public void earn_replayWithoutActivityLogIsRefused() {
+        voucher("v1", 20, "redeemed", NOW);
+        Map<String, Object> v = store.get("earn_codes/v1");
+        v.put("redeemedByUid", UID);
+        store.put("earn_codes/v1", v);
+
+        Probe<EarnResult> p = new Probe<>();
+        service.earn(UID, "v1", NOW, true, p);
+
+        assertEquals(LedgerException.Code.REJECTED, p.error().getCode());
+    }
+
+    @Test
+    public void batch_alreadyEarnedVoucherIsNotCountedAsAdded() {
+        voucher("v1", 20, "pending", NOW);
+        earn("v1");
+
+        List<LedgerOp> ops = new ArrayList<>();
+        ops.add(LedgerOp.earn("v1", NOW));
+        Probe<BatchResult> p = new Probe<>();
+        service.batch(UID, ops, p);
+        BatchResult r = p.result();
+
+        assertTrue(r.outcomes.get(0).refused());
+        assertEquals(0, r.pointsDelta);
+    }
+
+    @Test
+    public void earn_missingUserIsNotReportedAsMissingVoucher() {
+        voucher("v1", 20, "pending", NOW);
+
+        Probe<EarnResult> p = new Probe<>();
+        service.earn("nobody", "v1", NOW, false, p);
+
+        assertEquals(LedgerException.Code.NO_USER, p.error().getCode());
+    }
+
+    @Test
+    public void earn_expiredVoucherIsRejected() {
+        voucher("v1", 20, "pending", NOW - 2 * 3600_000L);
+
+        Probe<EarnResult> p = new Probe<>();
+        service.earn(UID, "v1", NOW, false, p);
+        LedgerException e = p.error();
+
+        assertEquals(LedgerException.Code.REJECTED, e.getCode());
+        assertEquals(100L, store.get("users/" + UID).get("points"));
+    }
+
+    @Test
+    public void spend_withoutEnoughPointsIsRefused() {
+        redeemCode("r1", 500);
+
+        Probe<SpendResult> p = new Probe<>();
+        service.spend(UID, "r1", 0, p);
+        LedgerException e = p.error();
+
+        assertEquals(LedgerException.Code.INSUFFICIENT_POINTS, e.getCode());
+        assertEquals("ACTIVE", store.get("redeem_codes/r1").get("status"));
+    }
+
+    @Test
+    public void spendAndRedeem_keepTheirStoredActivityShapes() {
+        redeemCode("r1", 30);
+        reward("w1", 40, true);
+
+        Probe<SpendResult> spent = new Probe<>();
+        service.spend(UID, "r1", 0, spent);
+        spent.result();
+        Probe<SpendResult> redeemed = new Probe<>();
+        service.redeem(UID, "w1", redeemed);
+
+        assertEquals(40, redeemed.result().points);
+        assertEquals(30L, store.get("users/" + UID).get("points"));
+
+        Map<String, Object> spendLog = store.get("users/" + UID + "/activities/spend_r1");
+        assertEquals(-30, spendLog.get("points"));
+        assertEquals("Latte", spendLog.get("item"));
+
+        int redeemLogs = 0;
+        for (String path : store.list("users/" + UID + "/activities")) {
+            Map<String, Object> log = store.get(path);
+            assertTrue(log.get("ts") instanceof Date);
+            if (!"redeem".equals(log.get("type"))) continue;
+            redeemLogs++;
+            assertEquals(40, log.get("points"));
+            assertEquals("Cookie", log.get("rewardName"));
+        }
+        assertEquals(1, redeemLogs);
+    }
+
+    @Test
+    public void batch_appliesValidOpsAndReportsRefusedOnes() {
+        voucher("v1", 10, "pending", NOW);
+        voucher("v2", 10, "redeemed", NOW);
+        reward("w1", 105, true);
+
+        List<LedgerOp> ops = new ArrayList<>();
+        ops.add(LedgerOp.earn("v1", NOW));
+        ops.add(LedgerOp.earn("v1", NOW));   // duplicate in the same batch
+        ops.add(LedgerOp.earn("v2", NOW));   // already used by someone else
+        ops.add(LedgerOp.redeem("w1"));      // affordable only thanks to v1
+        Probe<BatchResult> p = new Probe<>();
+        service.batch(UID, ops, p);
+        BatchResult r = p.result();
+
+        assertEquals(1, r.transactions);
+        assertTrue(r.outcomes.get(0).ok());
+        assertFalse(r.outcomes.get(1).ok());
+        assertFalse(r.outcomes.get(2).ok());
+        assertTrue(r.outcomes.get(1).refused());
+        assertTrue(r.outcomes.get(2).refused());
+        assertTrue(r.outcomes.get(3).ok());
+        assertEquals(-95, r.pointsDelta);
+        assertEquals(5L, store.get("users/" + UID).get("points"));
+    }
+
+    @Test
+    public void batch_transactionFailureIsNotARefusal() {
+        voucher("v1", 10, "pending", NOW);
+
+        List<LedgerOp> ops = new ArrayList<>();
+        ops.add(LedgerOp.earn("v1", NOW));
+        Probe<BatchResult> p = new Probe<>();
+        service.batch("nobody", ops, p);
+        BatchResult r = p.result();
+
+        assertFalse(r.outcomes.get(0).ok());
+        assertFalse(r.outcomes.get(0).refused());
+        assertEquals("pending", store.get("earn_codes/v1").get("status"));
+    }
+
+    @Test
+    public void batch_isSplitIntoChunks() {
+        int n = LoyaltyTransactionService.MAX_OPS_PER_TRANSACTION * 2 + 5;
+        List<LedgerOp> ops = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            voucher("v" + i, 1, "pending", NOW);
+            ops.add(LedgerOp.earn("v" + i, NOW));
+        }
+
+        Probe<BatchResult> p = new Probe<>();
+        service.batch(UID, ops, p);
+        BatchResult r = p.result();
+
+        assertEquals(3, r.transactions);
+        assertEquals(n, r.pointsDelta);
+        assertEquals(100L + n, store.get("users/" + UID).get("points"));
+        assertEquals(4L, store.get("users/" + UID).get("visits"));
+    }
+
+    @Test
+    public void earn_withRecentVisitHintDoesNotReadTheUser() {
+        final List<String> reads = new ArrayList<>();
+        LedgerStore recording = new LedgerStore() {
+            @Override public <T> void run(Body<T> body, LedgerCallback<T> callback) {
+                store.run(tx -> body.apply(new LedgerTransaction() {
+                    @Override public Map<String, Object> get(String path) throws LedgerException {
+                        reads.add(path);
+                        return tx.get(path);
+                    }
+                    @Override public void set(String path, Map<String, Object> data) { tx.set(path, data); }
+                    @Override public void update(String path, Map<String, Object> fields) { tx.update(path, fields); }
+                    @Override public void merge(String path, Map<String, Object> data) { tx.merge(path, data); }
+                    @Override public String newId(String collectionPath) { return tx.newId(collectionPath); }
+                }), callback);
+            }
+        };
+        service = new LoyaltyTransactionService(recording, () -> NOW, uid -> new Date(NOW - 60_000L));
+        voucher("v1", 20, "pending", NOW);
+
+        EarnResult r = earn("v1");
+
+        assertFalse(r.visitCounted);
+        assertFalse(reads.contains("users/" + UID));
+        assertEquals(120L, store.get("users/" + UID).get("points"));
+        assertEquals(3L, store.get("users/" + UID).get("visits"));
+    }
+
+    @Test
+    public void birthdayBonus_isGrantedOncePerDay() {
+        Probe<Boolean> first = new Probe<>();
+        service.birthdayBonus(UID, "2024-05-01", first);
+        Probe<Boolean> second = new Probe<>();
+        service.birthdayBonus(UID, "2024-05-01", second);
+
+        assertTrue(first.result());
+        assertFalse(second.result());
+        assertEquals(100L + LoyaltyTransactionService.BIRTHDAY_BONUS, store.get("users/" + UID).get("points"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void stats_trackLifetimeAndMonthlyTotals() {
+        voucher("v1", 20, "pending", NOW);
+        redeemCode("r1", 30);
+        earn("v1");
+        Probe<SpendResult> p = new Probe<>();
+        service.spend(UID, "r1", 0, p);
+        p.result();
+
+        Map<String, Object> stats = store.get(LoyaltyTransactionService.statsPath(UID));
+        assertEquals(20L, stats.get("lifetimeEarned"));
+        assertEquals(30L, stats.get("lifetimeSpent"));
+        assertTrue(stats.get("lastActivityTs") instanceof Date);
+        Map<String, Object> months = (Map<String, Object>) stats.get("months");
+        assertEquals(1, months.size());
+        Map<String, Object> month = (Map<String, Object>) months.values().iterator().next();
+        assertEquals(20L, month.get("earned"));
+        assertEquals(30L, month.get("spent"));
+    }
+
+    @Test
+    public void concurrentEarns_areSerializedByRetries() throws Exception {
+        final int threads = 8;
+        for (int i = 0; i < threads; i++) voucher("v" + i, 5, "pending", NOW);
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger ok = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            final String id = "v" + i;
+            new Thread(() -> {
+                try {
+                    start.await();
+                    service.earn(UID, id, NOW, false, new LedgerCallback<EarnResult>() {
+                        @Override public void onSuccess(EarnResult result) { ok.incrementAndGet(); }
+                        @Override public void onFailure(Exception e) {}
+                    });
+                } catch (InterruptedException ignored) {
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+
+        long points = (Long) store.get("users/" + UID).get("points");
+        assertEquals(100L + 5L * ok.get(), points);
+        assertTrue(store.attempts() >= threads);
+    }
+
+    // ---------------------------------------------------------------------------------------
+
+    /** Captures the outcome; the in-memory store completes synchronously. */
+    private static final class Probe<T> implements LedgerCallback<T> {
+        T result;
+        Exception error;
+
+        @Override public void onSuccess(T result) { this.result = result; }
+        @Override public void onFailure(Exception e) { this.error = e; }
+
+        T result() {
+            assertNull("unexpected failure: " + error, error);
+            return result;
+        }
+
+        LedgerException error() {
+            assertTrue("expected a LedgerException, got " + error, error instanceof LedgerException);
+            return (LedgerException) error;
+        }
+    }
+
+    private EarnResult earn(String voucherId) {
+        Probe<EarnResult> p = new Probe<>();
+        service.earn(UID, voucherId, NOW, false, p);
+        return p.result();
+    }
+
+    private void voucher(String id, int points, String status, long createdAt) {
+        Map<String, Object> v = new HashMap<>();
+        v.put("status", status);
+        v.put("points", (long) points);
+        v.put("validForSec", 3600L);
+        v.put("createdAt", new Date(createdAt));
+        if ("redeemed".equals(status)) v.put("redeemedByUid", "someone-else");
+        store.put("earn_codes/" + id, v);
+    }
+
+    private void redeemCode(String id, int cost) {
+        Map<String, Object> c = new HashMap<>();
+        c.put("type", "REDEEM");
+        c.put("status", "ACTIVE");
+        c.put("userUid", UID);
+        c.put("costPoints", (long) cost);
+        c.put("itemName", "Latte");
+        store.put("redeem_codes/" + id, c);
+    }
+
+    private void reward(String id, int cost, boolean active) {
+        Map<String, Object> r = new HashMap<>();
+        r.put("name", "Cookie");
+        r.put("redeemPoints", (long) cost);
+        r.put("active", active);
+        store.put("Rewards/" + id, r);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.loyaltyapp.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreContiguousAndBoundTheirValues() {
+        for (long v = 0; v < 100_000; v++) {
+            int i = LatencyHistogram.indexOf(v);
+            assertTrue(v <= LatencyHistogram.upperBound(i));
+            if (i > 0) assertTrue(v > LatencyHistogram.upperBound(i - 1));
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.indexOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void percentilesStayWithinOneBucket() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int v = 1; v <= 1000; v++) h.record(v);
+
+        assertEquals(1000, h.count());
+        assertEquals(1000, h.max());
+        long p50 = h.percentile(50);
+        long p99 = h.percentile(99);
+        assertTrue("p50=" + p50, p50 >= 500 && p50 <= 500 * 1.125);
+        assertTrue("p99=" + p99, p99 >= 990 && p99 <= 1000);
+        assertEquals(1000, h.percentile(100));
+    }
+
+    @Test
+    public void emptyAndReset() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.percentile(95));
+        h.record(42);
+        h.reset();
+        assertEquals(0, h.count());
+        assertEquals(0, h.percentile(50));
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.loyaltyapp.scan;
+
+import org.junit.Test;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EarnCodeTest {
+
+    private static final KeyPair TILL = newKeyPair();
+    private static final PublicKey KEY = TILL.getPublic();
+    private static final long CREATED_SEC = 1_700_000_000L;
+    private static final long NOW = CREATED_SEC * 1000L + 60_000L;
+
+    @Test
+    public void roundTrip() throws Exception {
+        String text = EarnCode.encode("Ab3xYz09Qq", 25, CREATED_SEC, 3600, TILL.getPrivate());
+
+        EarnCode code = EarnCode.decode(text, KEY, NOW);
+
+        assertEquals("Ab3xYz09Qq", code.id);
+        assertEquals(25, code.points);
+        assertEquals(CREATED_SEC * 1000L, code.createdAtMillis);
+        assertEquals(3600L, code.validForSec);
+        assertTrue(text.length() < 120);
+    }
+
+    @Test
+    public void tamperedPayloadIsRefused() {
+        String text = EarnCode.encode("Ab3xYz09Qq", 25, CREATED_SEC, 3600, TILL.getPrivate());
+        // Flip one character of the points field
+        char[] c = text.toCharArray();
+        int i = EarnCode.PREFIX.length() + 2;
+        c[i] = c[i] == 'A' ? 'B' : 'A';
+
+        assertEquals(EarnCode.Rejected.Reason.BAD_SIGNATURE, reasonFor(new String(c), KEY, NOW));
+    }
+
+    @Test
+    public void wrongKeyIsRefused() {
+        String text = EarnCode.encode("Ab3xYz09Qq", 25, CREATED_SEC, 3600, TILL.getPrivate());
+
+        assertEquals(EarnCode.Rejected.Reason.BAD_SIGNATURE, reasonFor(text, newKeyPair().getPublic(), NOW));
+    }
+
+    @Test
+    public void tamperedSignatureIsRefused() {
+        String text = EarnCode.encode("Ab3xYz09Qq", 25, CREATED_SEC, 3600, TILL.getPrivate());
+        char[] c = text.toCharArray();
+        int i = c.length - 5;
+        c[i] = c[i] == 'A' ? 'B' : 'A';
+
+        assertEquals(EarnCode.Rejected.Reason.BAD_SIGNATURE, reasonFor(new String(c), KEY, NOW));
+    }
+
+    @Test
+    public void everySignatureLengthRoundTrips() throws Exception {
+        // DER drops leading zero bytes of r and s and pads a set high bit; r || s must survive both
+        for (int i = 0; i < 200; i++) {
+            String text = EarnCode.encode("id" + i, i, CREATED_SEC, 3600, TILL.getPrivate());
+            assertEquals("id" + i, EarnCode.decode(text, KEY, NOW).id);
+        }
+    }
+
+    @Test
+    public void publicKeyIsReadFromBase64Url() throws Exception {
+        String text = EarnCode.encode("Ab3xYz09Qq", 25, CREATED_SEC, 3600, TILL.getPrivate());
+        PublicKey parsed = EarnCode.publicKey(EarnCode.Base64Url.encode(KEY.getEncoded()));
+
+        assertEquals("Ab3xYz09Qq", EarnCode.decode(text, parsed, NOW).id);
+        assertNull(EarnCode.publicKey(""));
+        assertNull(EarnCode.publicKey(null));
+        assertNull(EarnCode.publicKey("not*base64"));
+        assertNull(EarnCode.publicKey("AAAA"));
+    }
+
+    @Test
+    public void expiredCodeIsRefused() {
+        String text = EarnCode.encode("Ab3xYz09Qq", 25, CREATED_SEC, 30, TILL.getPrivate());
+
+        assertEquals(EarnCode.Rejected.Reason.EXPIRED, reasonFor(text, KEY, NOW));
+    }
+
+    @Test
+    public void withoutKeyEveryCodeIsRefused() {
+        String text = EarnCode.encode("Ab3xYz09Qq", 25, CREATED_SEC, 3600, TILL.getPrivate());
+
+        assertEquals(EarnCode.Rejected.Reason.NO_KEY, reasonFor(text, null, NOW));
+        assertEquals(EarnCode.Rejected.Reason.NO_KEY, reasonFor(text, EarnCode.publicKey(""), NOW));
+    }
+
+    @Test
+    public void idIsReadableWithoutVerifying() {
+        String text = EarnCode.encode("Ab3xYz09Qq", 25, CREATED_SEC, 30, TILL.getPrivate());
+
+        assertEquals("Ab3xYz09Qq", EarnCode.idOf(text));
+        assertNull(EarnCode.idOf("E2.AAAA"));
+        assertNull(EarnCode.idOf("Ab3xYz09Qq"));
+    }
+
+    @Test
+    public void garbageIsMalformed() {
+        assertEquals(EarnCode.Rejected.Reason.MALFORMED, reasonFor("E2.not*base64", KEY, NOW));
+        assertEquals(EarnCode.Rejected.Reason.MALFORMED, reasonFor("E2.AAAA", KEY, NOW));
+        assertEquals(EarnCode.Rejected.Reason.MALFORMED, reasonFor("plainDocId", KEY, NOW));
+    }
+
+    @Test
+    public void base64UrlMatchesTheRfcVectors() {
+        String[] plain = {"", "f", "fo", "foo", "foob", "fooba", "foobar"};
+        String[] encoded = {"", "Zg", "Zm8", "Zm9v", "Zm9vYg", "Zm9vYmE", "Zm9vYmFy"};
+        for (int i = 0; i < plain.length; i++) {
+            byte[] bytes = plain[i].getBytes();
+            assertEquals(encoded[i], EarnCode.Base64Url.encode(bytes));
+            assertTrue(Arrays.equals(bytes, EarnCode.Base64Url.decode(encoded[i], 0, encoded[i].length())));
+        }
+        assertNull(EarnCode.Base64Url.decode("Z", 0, 1));
+    }
+
+    private static KeyPair newKeyPair() {
+        try {
+            KeyPairGenerator gen = KeyPairGenerator.getInstance("EC");
+            gen.initialize(new ECGenParameterSpec("secp256r1"));
+            return gen.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static EarnCode.Rejected.Reason reasonFor(String text, PublicKey key, long now) {
+        try {
+            EarnCode.decode(text, key, now);
+        } catch (EarnCode.Rejected e) {
+            return e.reason;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.loyaltyapp.scan;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class RecentScanCacheTest {
+
+    private static final long T0 = 1_000_000L;
+
+    @Test
+    public void replaysUntilTheOutcomeExpires() {
+        RecentScanCache c = new RecentScanCache(8);
+        c.put("a", RecentScanCache.Outcome.PENDING, "Pending", T0);
+        c.put("b", RecentScanCache.Outcome.REJECTED, "Voucher is redeemed", T0);
+
+        assertEquals("Voucher is redeemed", c.lookup("b", T0 + 5_000).message);
+        assertNotNull(c.lookup("a", T0 + RecentScanCache.PENDING_TTL_MS - 1));
+        assertNull(c.lookup("a", T0 + RecentScanCache.PENDING_TTL_MS));
+        assertNotNull(c.lookup("b", T0 + RecentScanCache.FINAL_TTL_MS - 1));
+        assertNull(c.lookup("b", T0 + RecentScanCache.FINAL_TTL_MS));
+        assertEquals(0, c.size());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsed() {
+        RecentScanCache c = new RecentScanCache(2);
+        c.put("a", RecentScanCache.Outcome.SUCCESS, "+10 Points", T0);
+        c.put("b", RecentScanCache.Outcome.SUCCESS, "+10 Points", T0);
+        c.lookup("a", T0);            // a is now the most recent
+        c.put("c", RecentScanCache.Outcome.SUCCESS, "+10 Points", T0);
+
+        assertNotNull(c.lookup("a", T0));
+        assertNull(c.lookup("b", T0));
+        assertNotNull(c.lookup("c", T0));
+    }
+
+    @Test
+    public void keysAreScopedByUserAndType() {
+        String earn = RecentScanCache.key("u1", ScanPayload.Type.EARN_ID, "x");
+        assertFalse(earn.equals(RecentScanCache.key("u2", ScanPayload.Type.EARN_ID, "x")));
+        assertFalse(earn.equals(RecentScanCache.key("u1", ScanPayload.Type.REDEEM, "x")));
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.loyaltyapp.scan;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * JMH-style microbenchmark run as a plain unit test: warm-up iterations, then measured
+ * iterations reporting ns/op and, on HotSpot, bytes allocated per op (JMH's
+ * gc.alloc.rate.norm). The split-based baseline is what processScannedCode did before.
+ *
+ * <p>Skipped in the normal unit test run; {@code ./gradlew test -Pbenchmarks} runs it and
+ * prints one line per case. For stable numbers also raise {@code -PbenchOps} (ops per
+ * iteration, default 200000). Timings and allocation are reported, never asserted: the
+ * functional checks live in {@link ScanPayloadParserTest}.
+ */
+public class ScanPayloadParserBenchmark {
+
+    private static final int OPS = Integer.getInteger("benchOps", 200_000);
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int ITERATIONS = 5;
+
+    private static final String[] INPUTS = {
+            "REDEEM|c0d3XyZ123|Uq8bTz0lM2fPq9hRwA3c|150",
+            "Ab3xYz09QqLm4Nc7Pd2R",
+            "  REDEEM|k9|Uq8bTz0lM2fPq9hRwA3c|25\n",
+    };
+
+    private interface Body {
+        /** Returns something derived from the parse so the JIT cannot drop it. */
+        long run(String input);
+    }
+
+    @Before
+    public void onlyWhenAskedFor() {
+        assumeTrue("benchmarks disabled; run with -Pbenchmarks", Boolean.getBoolean("benchmarks"));
+    }
+
+    @Test
+    public void parser() {
+        final ScanPayload p = new ScanPayload();
+        measure("parser", in -> {
+            ScanPayloadParser.parse(in, p);
+            return p.type() == ScanPayload.Type.REDEEM ? p.number(ScanPayload.REDEEM_COST) + p.length(0) : p.length(0);
+        });
+    }
+
+    @Test
+    public void splitBaseline() {
+        measure("split", in -> {
+            String raw = in.trim();
+            if (raw.startsWith("REDEEM|")) {
+                String[] parts = raw.split("\\|");
+                return Integer.parseInt(parts[3]) + parts[1].length();
+            }
+            return raw.length();
+        });
+    }
+
+    // ---------------------------------------------------------------------------------------
+
+    private static void measure(String name, Body body) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) sink += loop(body);
+
+        double bestNs = Double.MAX_VALUE;
+        double bytes = -1;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long alloc0 = allocatedBytes();
+            long t0 = System.nanoTime();
+            sink += loop(body);
+            long ns = System.nanoTime() - t0;
+            long alloc1 = allocatedBytes();
+            bestNs = Math.min(bestNs, (double) ns / OPS);
+            if (alloc0 >= 0 && alloc1 >= 0) bytes = (double) (alloc1 - alloc0) / OPS;
+        }
+        System.out.println(String.format(Locale.US, "%-8s %8.1f ns/op %8.1f B/op (sink %d)",
+                name, bestNs, bytes, sink));
+    }
+
+    private static long loop(Body body) {
+        long acc = 0;
+        for (int i = 0; i < OPS; i++) acc += body.run(INPUTS[i % INPUTS.length]);
+        return acc;
+    }
+
+    /** Bytes allocated so far by this thread, or -1 when the JVM cannot tell. */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hs = (com.sun.management.ThreadMXBean) bean;
+            if (hs.isThreadAllocatedMemorySupported() && hs.isThreadAllocatedMemoryEnabled()) {
+                return hs.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
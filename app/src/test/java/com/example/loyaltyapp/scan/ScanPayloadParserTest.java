@@ -0,0 +1,76 @@
+package com.example.loyaltyapp.scan;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScanPayloadParserTest {
+
+    private final ScanPayload p = new ScanPayload();
+
+    @Test
+    public void redeem() {
+        assertTrue(ScanPayloadParser.parse("  REDEEM|c42|uid-7|150\n", p));
+
+        assertEquals(ScanPayload.Type.REDEEM, p.type());
+        assertEquals("c42", p.text(ScanPayload.REDEEM_CODE_ID));
+        assertTrue(p.textEquals(ScanPayload.REDEEM_USER_UID, "uid-7"));
+        assertFalse(p.textEquals(ScanPayload.REDEEM_USER_UID, "uid-8"));
+        assertEquals(150L, p.number(ScanPayload.REDEEM_COST));
+    }
+
+    @Test
+    public void redeemIgnoresTrailingFields() {
+        assertTrue(ScanPayloadParser.parse("REDEEM|c|u|5|extra|more", p));
+        assertEquals(5L, p.number(ScanPayload.REDEEM_COST));
+        assertEquals(3, p.fieldCount());
+    }
+
+    @Test
+    public void redeemErrorsKeepTheirMessages() {
+        assertFalse(ScanPayloadParser.parse("REDEEM|c|u", p));
+        assertEquals("Invalid redemption QR format", p.error());
+        assertFalse(ScanPayloadParser.parse("REDEEM||u|5", p));
+        assertEquals("Invalid redemption QR format", p.error());
+        assertFalse(ScanPayloadParser.parse("REDEEM|c|u|5x", p));
+        assertEquals("Invalid points in QR code", p.error());
+        assertFalse(ScanPayloadParser.parse("REDEEM|c|u|99999999999", p));
+        assertEquals("Invalid points in QR code", p.error());
+        assertTrue(ScanPayloadParser.parse("REDEEM|c|u|2147483647", p));
+    }
+
+    @Test
+    public void earnIds() {
+        String id = "AbC123xyz";
+        assertTrue(ScanPayloadParser.parse(id, p));
+        assertEquals(ScanPayload.Type.EARN_ID, p.type());
+        // The whole untrimmed String comes back as is, without a copy
+        assertTrue(p.text(0) == id);
+
+        assertTrue(ScanPayloadParser.parse(" AbC123xyz ", p));
+        assertEquals(id, p.text(0));
+
+        assertFalse(ScanPayloadParser.parse("earn_codes/x", p));
+        assertFalse(ScanPayloadParser.parse("   ", p));
+        assertEquals("Invalid QR Code", p.error());
+    }
+
+    @Test
+    public void signedEarnCodesAreRecognised() {
+        assertTrue(ScanPayloadParser.parse("E2.AgAZZVPxAAAOEEFiM3g", p));
+        assertEquals(ScanPayload.Type.SIGNED_EARN, p.type());
+        assertEquals("E2.AgAZZVPxAAAOEEFiM3g", p.text(0));
+    }
+
+    @Test
+    public void resultIsReusable() {
+        assertTrue(ScanPayloadParser.parse("REDEEM|c|u|5", p));
+        assertFalse(ScanPayloadParser.parse("REDEEM|c", p));
+        assertEquals(0, p.fieldCount());
+        assertTrue(ScanPayloadParser.parse("id1", p));
+        assertEquals(ScanPayload.Type.EARN_ID, p.type());
+        assertEquals(1, p.fieldCount());
+    }
+}
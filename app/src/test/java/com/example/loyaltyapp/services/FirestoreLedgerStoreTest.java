@@ -0,0 +1,47 @@
+package com.example.loyaltyapp.services;
+
+import com.example.loyaltyapp.ledger.LedgerException;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class FirestoreLedgerStoreTest {
+
+    @Test
+    public void refusalsMapToCodesTheSdkDoesNotRetry() {
+        assertEquals(FirebaseFirestoreException.Code.INVALID_ARGUMENT,
+                FirestoreLedgerStore.codeFor(LedgerException.Code.REJECTED));
+        assertEquals(FirebaseFirestoreException.Code.OUT_OF_RANGE,
+                FirestoreLedgerStore.codeFor(LedgerException.Code.INSUFFICIENT_POINTS));
+        assertEquals(FirebaseFirestoreException.Code.NOT_FOUND,
+                FirestoreLedgerStore.codeFor(LedgerException.Code.NOT_FOUND));
+        assertEquals(FirebaseFirestoreException.Code.NOT_FOUND,
+                FirestoreLedgerStore.codeFor(LedgerException.Code.NO_USER));
+        assertEquals(FirebaseFirestoreException.Code.DATA_LOSS,
+                FirestoreLedgerStore.codeFor(LedgerException.Code.INVALID));
+        assertEquals(FirebaseFirestoreException.Code.PERMISSION_DENIED,
+                FirestoreLedgerStore.codeFor(LedgerException.Code.PERMISSION_DENIED));
+    }
+
+    @Test
+    public void noRefusalMapsToARetriedCode() {
+        for (LedgerException.Code code : LedgerException.Code.values()) {
+            if (code == LedgerException.Code.ABORTED || code == LedgerException.Code.UNAVAILABLE) continue;
+            FirebaseFirestoreException.Code mapped = FirestoreLedgerStore.codeFor(code);
+            assertNotEquals(code.name(), FirebaseFirestoreException.Code.ABORTED, mapped);
+            assertNotEquals(code.name(), FirebaseFirestoreException.Code.FAILED_PRECONDITION, mapped);
+            assertNotEquals(code.name(), FirebaseFirestoreException.Code.UNAVAILABLE, mapped);
+        }
+    }
+
+    @Test
+    public void contentionAndOutagesStayRetryable() {
+        assertEquals(FirebaseFirestoreException.Code.ABORTED,
+                FirestoreLedgerStore.codeFor(LedgerException.Code.ABORTED));
+        assertEquals(FirebaseFirestoreException.Code.UNAVAILABLE,
+                FirestoreLedgerStore.codeFor(LedgerException.Code.UNAVAILABLE));
+    }
+}
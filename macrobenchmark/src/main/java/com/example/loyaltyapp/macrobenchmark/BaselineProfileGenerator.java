@@ -0,0 +1,43 @@
+package com.example.loyaltyapp.macrobenchmark;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import kotlin.Unit;
+
+/**
+ * Collects the ART baseline profile shipped with :app. Generate it with
+ * {@code ./gradlew :app:generateBaselineProfile} on a device or emulator (API 33+, or 28+
+ * rooted) that has an account signed in; the result lands under
+ * {@code app/src/release/generated/baselineProfiles} and is meant to be committed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+
+    @Rule
+    public BaselineProfileRule rule = new BaselineProfileRule();
+
+    /** Launch to the first tab; also used to order classes in the dex (startup profile). */
+    @Test
+    public void startup() {
+        rule.collect(LoyaltyJourneys.PACKAGE, 15, 3, "startup", true, false, name -> true, scope -> {
+            scope.pressHome();
+            LoyaltyJourneys.startAndWaitForFirstTab(scope);
+            return Unit.INSTANCE;
+        });
+    }
+
+    @Test
+    public void tabSwitch() {
+        rule.collect(LoyaltyJourneys.PACKAGE, 15, 3, "tabs", false, false, name -> true, scope -> {
+            scope.pressHome();
+            LoyaltyJourneys.startAndWaitForFirstTab(scope);
+            LoyaltyJourneys.switchTabs(scope.getDevice());
+            return Unit.INSTANCE;
+        });
+    }
+}
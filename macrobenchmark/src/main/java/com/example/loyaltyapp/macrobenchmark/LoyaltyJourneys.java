@@ -0,0 +1,50 @@
+package com.example.loyaltyapp.macrobenchmark;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+/**
+ * User journeys shared by the benchmarks and the profile generator. The device must have a
+ * signed-in, verified account with a complete profile, otherwise launch stops at sign-up or
+ * on the profile tab.
+ */
+final class LoyaltyJourneys {
+
+    static final String PACKAGE = "com.example.loyaltyapp";
+
+    /** Splash delay plus routing plus the first tab, with room for a slow device. */
+    private static final long FIRST_TAB_TIMEOUT_MS = 10_000L;
+    private static final long TAB_TIMEOUT_MS = 3_000L;
+
+    /** Bottom navigation items by view id; the scan tab is left out, it needs the camera. */
+    private static final String[] TABS = {
+            "navigation_activity", "rewardsFragment", "profileFragment", "homeFragment",
+    };
+
+    private LoyaltyJourneys() {}
+
+    /** Launches from the launcher activity and waits until LoyaltyActivity shows a tab. */
+    static void startAndWaitForFirstTab(MacrobenchmarkScope scope) {
+        scope.startActivityAndWait();
+        waitForFirstTab(scope.getDevice());
+    }
+
+    static void waitForFirstTab(UiDevice device) {
+        if (!device.wait(Until.hasObject(By.res(PACKAGE, "bottom_navigation")), FIRST_TAB_TIMEOUT_MS)) {
+            throw new IllegalStateException("LoyaltyActivity did not show up; is an account signed in?");
+        }
+    }
+
+    /** Visits every tab once, ending on Home. */
+    static void switchTabs(UiDevice device) {
+        for (String tab : TABS) {
+            UiObject2 item = device.findObject(By.res(PACKAGE, tab));
+            if (item == null) throw new IllegalStateException("No tab " + tab);
+            item.click();
+            device.waitForIdle(TAB_TIMEOUT_MS);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.loyaltyapp.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Launch from the launcher icon to the first LoyaltyActivity tab. timeToInitialDisplay is the
+ * splash; timeToFullDisplay comes from the reportFullyDrawn() LoyaltyActivity makes once its
+ * first tab is drawn, so it includes the splash delay and the routing decision.
+ *
+ * <p>Compare {@code None} with {@code BaselineProfile} to see what the shipped profile buys.
+ * No profile is committed yet, so the profile runs use one when the build has it and otherwise
+ * fall back to plain partial compilation; generate one first with BaselineProfileGenerator
+ * ({@code ./gradlew :app:generateBaselineProfile}) for a meaningful comparison.
+ * Run with {@code ./gradlew :macrobenchmark:connectedBenchmarkReleaseAndroidTest}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public MacrobenchmarkRule rule = new MacrobenchmarkRule();
+
+    @Test
+    public void coldStartNoCompilation() {
+        startup(new CompilationMode.None(), StartupMode.COLD);
+    }
+
+    @Test
+    public void coldStartBaselineProfile() {
+        startup(new CompilationMode.Partial(BaselineProfileMode.UseIfAvailable), StartupMode.COLD);
+    }
+
+    @Test
+    public void warmStartBaselineProfile() {
+        startup(new CompilationMode.Partial(BaselineProfileMode.UseIfAvailable), StartupMode.WARM);
+    }
+
+    private void startup(CompilationMode mode, StartupMode startupMode) {
+        rule.measureRepeated(
+                LoyaltyJourneys.PACKAGE,
+                Collections.singletonList(new StartupTimingMetric()),
+                mode,
+                startupMode,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    LoyaltyJourneys.startAndWaitForFirstTab(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
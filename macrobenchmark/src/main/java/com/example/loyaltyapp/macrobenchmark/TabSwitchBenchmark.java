@@ -0,0 +1,56 @@
+package com.example.loyaltyapp.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Frame timings while going through the bottom navigation tabs of a freshly launched
+ * LoyaltyActivity, so every tab is created (not just shown) during the measurement.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TabSwitchBenchmark {
+
+    private static final int ITERATIONS = 5;
+
+    @Rule
+    public MacrobenchmarkRule rule = new MacrobenchmarkRule();
+
+    @Test
+    public void tabSwitchNoCompilation() {
+        tabSwitch(new CompilationMode.None());
+    }
+
+    @Test
+    public void tabSwitchBaselineProfile() {
+        tabSwitch(new CompilationMode.Partial(BaselineProfileMode.UseIfAvailable));
+    }
+
+    private void tabSwitch(CompilationMode mode) {
+        rule.measureRepeated(
+                LoyaltyJourneys.PACKAGE,
+                Collections.singletonList(new FrameTimingMetric()),
+                mode,
+                null,
+                ITERATIONS,
+                scope -> {
+                    scope.killProcess();
+                    LoyaltyJourneys.startAndWaitForFirstTab(scope);
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    LoyaltyJourneys.switchTabs(scope.getDevice());
+                    return Unit.INSTANCE;
+                });
+    }
+}